@@ -0,0 +1,308 @@
+package com.controlevotacao.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.controlevotacao.exception.ValidacaoCpfIndisponivelException;
+import com.controlevotacao.service.SituacaoCpf;
+import com.controlevotacao.util.CpfCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Cliente do serviço externo de validação de cpf.
+//Usa conexões reaproveitadas de um pool com timeouts de conexão, leitura e espera pelo pool, de modo que um
+//serviço lento não prenda as threads do Tomcat. As chamadas são assíncronas (threads de I/O do próprio cliente),
+//limitadas por um bulkhead e protegidas por um circuito que para de chamar o serviço após falhas seguidas.
+@Component
+public class ValidacaoCpfClient {
+
+	//O que fazer com o voto quando o serviço não responde: recusar (FALHA_FECHADA) ou aceitar o cpf (FALHA_ABERTA)
+	public enum PoliticaFalha {
+		FALHA_FECHADA, FALHA_ABERTA
+	}
+
+	private static final TypeReference<Map<String, Object>> TIPO_RESPOSTA = new TypeReference<Map<String, Object>>() {};
+
+	private final String urlValidaCpf;
+	private final CloseableHttpAsyncClient httpClient;
+	private final Semaphore chamadasSimultaneas;
+	private final Circuito circuito;
+	private final PoliticaFalha politicaFalha;
+	private final ObjectMapper objectMapper;
+	private ScheduledExecutorService varreduraPool;
+	Logger log = LoggerFactory.getLogger(ValidacaoCpfClient.class);
+
+	@Autowired
+	public ValidacaoCpfClient(@Value("${app.url.valida.cpf}") String urlValidaCpf,
+			                  @Value("${votacao.cpf.cliente.timeout-conexao-ms:500}") int timeoutConexaoMs,
+			                  @Value("${votacao.cpf.cliente.timeout-leitura-ms:2000}") int timeoutLeituraMs,
+			                  @Value("${votacao.cpf.cliente.timeout-pool-ms:200}") int timeoutPoolMs,
+			                  @Value("${votacao.cpf.cliente.max-conexoes:200}") int maxConexoes,
+			                  @Value("${votacao.cpf.cliente.max-chamadas-simultaneas:200}") int maxChamadasSimultaneas,
+			                  @Value("${votacao.cpf.cliente.circuito.limite-falhas:5}") int limiteFalhas,
+			                  @Value("${votacao.cpf.cliente.circuito.tempo-aberto-ms:10000}") long tempoAbertoMs,
+			                  @Value("${votacao.cpf.cliente.circuito.politica:FALHA_FECHADA}") PoliticaFalha politicaFalha,
+			                  ObjectMapper objectMapper) throws IOReactorException {
+		this(urlValidaCpf, criarPool(timeoutConexaoMs, timeoutLeituraMs, maxConexoes), timeoutConexaoMs, timeoutLeituraMs,
+				timeoutPoolMs, maxChamadasSimultaneas, limiteFalhas, tempoAbertoMs, politicaFalha, objectMapper);
+	}
+
+	private ValidacaoCpfClient(String urlValidaCpf, PoolingNHttpClientConnectionManager pool, int timeoutConexaoMs,
+			int timeoutLeituraMs, int timeoutPoolMs, int maxChamadasSimultaneas, int limiteFalhas, long tempoAbertoMs,
+			PoliticaFalha politicaFalha, ObjectMapper objectMapper) {
+		this(urlValidaCpf, criarHttpClient(pool, timeoutConexaoMs, timeoutLeituraMs, timeoutPoolMs),
+				maxChamadasSimultaneas, limiteFalhas, tempoAbertoMs, politicaFalha, objectMapper);
+		// o pool só confere o prazo de quem espera por conexão quando outra conexão é pedida ou devolvida:
+		// sem essa varredura, com todas as conexões presas, a espera passaria do timeout do pool
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("validacao-cpf-pool-");
+		threadFactory.setDaemon(true);
+		this.varreduraPool = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		long intervalo = Math.max(10, timeoutPoolMs / 2);
+		this.varreduraPool.scheduleWithFixedDelay(pool::validatePendingRequests, intervalo, intervalo, TimeUnit.MILLISECONDS);
+		this.httpClient.start();
+	}
+
+	ValidacaoCpfClient(String urlValidaCpf, CloseableHttpAsyncClient httpClient, int maxChamadasSimultaneas,
+			int limiteFalhas, long tempoAbertoMs, PoliticaFalha politicaFalha, ObjectMapper objectMapper) {
+		this.urlValidaCpf = urlValidaCpf;
+		this.httpClient = httpClient;
+		this.chamadasSimultaneas = new Semaphore(maxChamadasSimultaneas);
+		this.circuito = new Circuito(limiteFalhas, tempoAbertoMs);
+		this.politicaFalha = politicaFalha;
+		this.objectMapper = objectMapper;
+	}
+
+	private static PoolingNHttpClientConnectionManager criarPool(int timeoutConexaoMs, int timeoutLeituraMs,
+			int maxConexoes) throws IOReactorException {
+		IOReactorConfig reactorConfig = IOReactorConfig.custom()
+				.setConnectTimeout(timeoutConexaoMs)
+				.setSoTimeout(timeoutLeituraMs)
+				.build();
+		PoolingNHttpClientConnectionManager pool =
+				new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+		// todas as chamadas vão para o mesmo host, então a rota pode usar o pool inteiro
+		pool.setMaxTotal(maxConexoes);
+		pool.setDefaultMaxPerRoute(maxConexoes);
+		return pool;
+	}
+
+	private static CloseableHttpAsyncClient criarHttpClient(PoolingNHttpClientConnectionManager pool,
+			int timeoutConexaoMs, int timeoutLeituraMs, int timeoutPoolMs) {
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(timeoutConexaoMs)
+				.setSocketTimeout(timeoutLeituraMs)
+				.setConnectionRequestTimeout(timeoutPoolMs)
+				.build();
+		return HttpAsyncClients.custom()
+				.setConnectionManager(pool)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+				.build();
+	}
+
+	//Consulta a situação do cpf sem bloquear a thread chamadora.
+	//O futuro falha com ValidacaoCpfIndisponivelException se o circuito estiver aberto, o bulkhead cheio ou a chamada falhar.
+	public CompletableFuture<SituacaoCpf> consultar(long cpf) {
+		CompletableFuture<SituacaoCpf> resultado = new CompletableFuture<>();
+		Passagem passagem = circuito.permiteChamada();
+		if (passagem == Passagem.RECUSADA) {
+			resultado.completeExceptionally(new ValidacaoCpfIndisponivelException("Circuito de validação de cpf aberto"));
+			return resultado;
+		}
+		if (!chamadasSimultaneas.tryAcquire()) {
+			circuito.liberarTentativa(passagem);
+			resultado.completeExceptionally(new ValidacaoCpfIndisponivelException("Limite de chamadas simultâneas à validação de cpf atingido"));
+			return resultado;
+		}
+
+		HttpGet get = new HttpGet(urlValidaCpf + CpfCodec.paraString(cpf));
+		try {
+			executar(get, resultado, passagem);
+		} catch (RuntimeException e) {
+			// cliente parado ou em encerramento: a chamada não chegou a sair e o callback não será chamado
+			chamadasSimultaneas.release();
+			circuito.liberarTentativa(passagem);
+			resultado.completeExceptionally(
+					new ValidacaoCpfIndisponivelException("Não foi possível iniciar a validação de cpf: " + e.getMessage(), e));
+		}
+		return resultado;
+	}
+
+	private void executar(HttpGet get, CompletableFuture<SituacaoCpf> resultado, Passagem passagem) {
+		httpClient.execute(get, new FutureCallback<HttpResponse>() {
+			@Override
+			public void completed(HttpResponse response) {
+				try {
+					SituacaoCpf situacao = interpretar(response);
+					circuito.registrarSucesso();
+					resultado.complete(situacao);
+				} catch (Exception e) {
+					falhar(e);
+				} finally {
+					chamadasSimultaneas.release();
+				}
+			}
+
+			@Override
+			public void failed(Exception e) {
+				chamadasSimultaneas.release();
+				if (e instanceof TimeoutException) {
+					// espera por conexão livre no pool: saturação local, não indica falha do serviço
+					circuito.liberarTentativa(passagem);
+					resultado.completeExceptionally(
+							new ValidacaoCpfIndisponivelException("Sem conexão livre para a validação de cpf", e));
+					return;
+				}
+				falhar(e);
+			}
+
+			@Override
+			public void cancelled() {
+				chamadasSimultaneas.release();
+				falhar(new IOException("Chamada cancelada"));
+			}
+
+			private void falhar(Exception e) {
+				circuito.registrarFalha();
+				resultado.completeExceptionally(
+						new ValidacaoCpfIndisponivelException("Falha ao consultar a validação de cpf: " + e.getMessage(), e));
+			}
+		});
+	}
+
+	//Aplica a política de falha a uma consulta que não obteve resposta: aceita o cpf ou propaga o erro
+	public SituacaoCpf situacaoSemResposta(Throwable erro) {
+		if (erro instanceof CompletionException && erro.getCause() != null) {
+			erro = erro.getCause();
+		}
+		if (politicaFalha == PoliticaFalha.FALHA_ABERTA) {
+			log.warn("Validação de cpf indisponível, aceitando o cpf: {}", erro.getMessage());
+			return SituacaoCpf.HABILITADO;
+		}
+		if (erro instanceof RuntimeException) {
+			throw (RuntimeException) erro;
+		}
+		throw new ValidacaoCpfIndisponivelException(erro.getMessage(), erro);
+	}
+
+	public boolean isCircuitoAberto() {
+		return circuito.isAberto();
+	}
+
+	@PreDestroy
+	public void fechar() throws IOException {
+		if (varreduraPool != null) {
+			varreduraPool.shutdownNow();
+		}
+		httpClient.close();
+	}
+
+	private SituacaoCpf interpretar(HttpResponse response) throws IOException {
+		int status = response.getStatusLine().getStatusCode();
+		// 404 é resposta válida do serviço: o cpf não existe
+		if (status == 404) {
+			EntityUtils.consumeQuietly(response.getEntity());
+			return SituacaoCpf.INVALIDO;
+		}
+		if (status < 200 || status >= 300) {
+			EntityUtils.consumeQuietly(response.getEntity());
+			throw new IOException("Status HTTP " + status);
+		}
+
+		// Verifica o JSON retornado para saber se o cliente pode votar
+		Map<String, Object> body = response.getEntity() != null
+				? objectMapper.readValue(EntityUtils.toByteArray(response.getEntity()), TIPO_RESPOSTA)
+				: null;
+		if (body != null && "UNABLE_TO_VOTE".equals(body.get("status"))) {
+			return SituacaoCpf.NAO_HABILITADO;
+		}
+		return SituacaoCpf.HABILITADO;
+	}
+
+	//Como o circuito deixou a chamada passar: recusada, normal (circuito fechado) ou como a única chamada de teste
+	enum Passagem {
+		RECUSADA, NORMAL, TESTE
+	}
+
+	//Circuito simples: abre após limiteFalhas falhas seguidas, recusa chamadas por tempoAbertoMs
+	//e depois deixa passar uma única chamada de teste, que fecha o circuito se der certo ou o reabre se falhar.
+	static final class Circuito {
+		private final int limiteFalhas;
+		private final long tempoAbertoMs;
+		private final AtomicInteger falhasSeguidas = new AtomicInteger();
+		private final AtomicBoolean tentativaEmCurso = new AtomicBoolean();
+		private volatile long abertoAte;
+
+		Circuito(int limiteFalhas, long tempoAbertoMs) {
+			this.limiteFalhas = limiteFalhas;
+			this.tempoAbertoMs = tempoAbertoMs;
+		}
+
+		Passagem permiteChamada() {
+			long ate = abertoAte;
+			if (ate == 0) {
+				return Passagem.NORMAL;
+			}
+			if (System.currentTimeMillis() < ate) {
+				return Passagem.RECUSADA;
+			}
+			// prazo vencido: só a primeira chamada passa como teste
+			return tentativaEmCurso.compareAndSet(false, true) ? Passagem.TESTE : Passagem.RECUSADA;
+		}
+
+		//Devolve a vaga de teste quando a chamada que a ocupou nem chegou a ser feita; as outras não mexem na vaga
+		void liberarTentativa(Passagem passagem) {
+			if (passagem == Passagem.TESTE) {
+				tentativaEmCurso.set(false);
+			}
+		}
+
+		void registrarSucesso() {
+			falhasSeguidas.set(0);
+			abertoAte = 0;
+			tentativaEmCurso.set(false);
+		}
+
+		void registrarFalha() {
+			if (abertoAte != 0 || falhasSeguidas.incrementAndGet() >= limiteFalhas) {
+				abertoAte = System.currentTimeMillis() + tempoAbertoMs;
+			}
+			tentativaEmCurso.set(false);
+		}
+
+		boolean isAberto() {
+			long ate = abertoAte;
+			return ate != 0 && System.currentTimeMillis() < ate;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.controlevotacao.config;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.controlevotacao.model.PautaVotacao;
+
+//Migra bancos criados antes do formato compacto de pauta_votacao (id_pauta, cod_cpf e voto em VARCHAR)
+//para o formato com chave BIGINT única (num_pauta * FATOR_PAUTA + cpf) e voto TINYINT.
+//Roda assim que o DataSource é criado, antes do schema.sql e do Hibernate, e não faz nada em bancos já migrados.
+//A tabela antiga é mantida como pauta_votacao_legado para conferência.
+@Component
+public class MigracaoFormatoVotos implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(MigracaoFormatoVotos.class);
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof DataSource) {
+            migrar(new JdbcTemplate((DataSource) bean));
+        }
+        return bean;
+    }
+
+    private void migrar(JdbcTemplate jdbc) {
+        boolean compactaPendente = existeTabela(jdbc, "PAUTA_VOTACAO_COMPACTA");
+        if (!existeTabela(jdbc, "PAUTA_VOTACAO")) {
+            // interrompida entre a renomeação da tabela antiga e a da nova: só falta o último passo
+            if (compactaPendente) {
+                jdbc.execute("ALTER TABLE pauta_votacao_compacta RENAME TO pauta_votacao");
+            }
+            return;
+        }
+        if (!formatoAntigo(jdbc)) {
+            return;
+        }
+
+        log.info("Migrando pauta_votacao para o formato compacto");
+        if (compactaPendente) {
+            jdbc.execute("DROP TABLE pauta_votacao_compacta");
+        }
+
+        jdbc.execute("CREATE SEQUENCE IF NOT EXISTS seq_num_pauta");
+        jdbc.execute("ALTER TABLE pauta ADD COLUMN IF NOT EXISTS num_pauta BIGINT "
+                + "DEFAULT NEXT VALUE FOR seq_num_pauta NOT NULL UNIQUE");
+        jdbc.execute("CREATE TABLE pauta_votacao_compacta (id_voto BIGINT PRIMARY KEY, voto TINYINT NOT NULL)");
+
+        int migrados = jdbc.update("INSERT INTO pauta_votacao_compacta (id_voto, voto) "
+                + "SELECT p.num_pauta * " + PautaVotacao.FATOR_PAUTA + " + CAST(v.cod_cpf AS BIGINT), "
+                + "CASE WHEN v.voto = 'SIM' THEN 1 ELSE 0 END "
+                + "FROM pauta_votacao v JOIN pauta p ON p.id_pauta = v.id_pauta "
+                + "WHERE REGEXP_LIKE(v.cod_cpf, '^[0-9]{11}$') ORDER BY 1");
+        Integer total = jdbc.queryForObject("SELECT COUNT(*) FROM pauta_votacao", Integer.class);
+        if (total != null && total > migrados) {
+            log.warn("{} votos com cpf fora do formato de 11 dígitos não foram migrados e permanecem em pauta_votacao_legado",
+                    total - migrados);
+        }
+
+        jdbc.execute("ALTER TABLE pauta_votacao RENAME TO pauta_votacao_legado");
+        jdbc.execute("ALTER TABLE pauta_votacao_compacta RENAME TO pauta_votacao");
+        log.info("Migração de pauta_votacao concluída: {} votos no formato compacto", migrados);
+    }
+
+    private boolean existeTabela(JdbcTemplate jdbc, String tabela) {
+        Integer qtd = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = ?",
+                Integer.class, tabela);
+        return qtd != null && qtd > 0;
+    }
+
+    private boolean formatoAntigo(JdbcTemplate jdbc) {
+        Integer qtd = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = 'PUBLIC' "
+                        + "AND TABLE_NAME = 'PAUTA_VOTACAO' AND COLUMN_NAME = 'COD_CPF' AND DATA_TYPE = 'CHARACTER VARYING'",
+                Integer.class);
+        return qtd != null && qtd > 0;
+    }
+}
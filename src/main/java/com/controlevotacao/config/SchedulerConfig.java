@@ -3,19 +3,21 @@ package com.controlevotacao.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+//Scheduler das tarefas periódicas leves (difusão do placar e, com várias instâncias, leitura dos eventos das outras
+//instâncias e recarga do placar). São duas threads para uma consulta lenta ao banco não atrasar a difusão do placar.
+//A renovação da concessão de líder tem scheduler próprio em LiderancaCluster e o fechamento das sessões tem thread
+//própria em AgendaFechamentoSessoes.
 @Configuration
-@EnableScheduling
 public class SchedulerConfig {
 
     @Bean
     public TaskScheduler taskScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
-        scheduler.setPoolSize(5);
-        scheduler.setThreadNamePrefix("pauta-scheduler-");
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("tarefas-periodicas-");
         scheduler.initialize();
         return scheduler;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package com.controlevotacao.controller;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Guarda uma tela já serializada em bytes, com o status e o ETag calculados uma única vez.
+//A tela é montada de novo somente na primeira requisição depois de invalidar(); enquanto isso as requisições
+//copiam os mesmos bytes e, com If-None-Match igual ao ETag, o Spring responde 304 sem corpo.
+final class TelaEmCache {
+
+	private final Supplier<ResponseEntity<Map<String, Object>>> montagem;
+	private final ObjectMapper objectMapper;
+	private final AtomicLong versao = new AtomicLong();
+	private volatile TelaSerializada atual;
+
+	TelaEmCache(Supplier<ResponseEntity<Map<String, Object>>> montagem, ObjectMapper objectMapper) {
+		this.montagem = montagem;
+		this.objectMapper = objectMapper;
+	}
+
+	ResponseEntity<byte[]> obter() throws JsonProcessingException {
+		TelaSerializada tela = atual;
+		long versaoAtual = versao.get();
+		if (tela == null || tela.versao != versaoAtual) {
+			// a versão é lida antes de montar: uma invalidação durante a montagem faz a próxima requisição montar de novo
+			tela = serializar(versaoAtual, montagem.get(), objectMapper);
+			atual = tela;
+		}
+		return tela.resposta();
+	}
+
+	void invalidar() {
+		versao.incrementAndGet();
+	}
+
+	//Serializa uma tela que não fica em cache (por exemplo as páginas seguintes à primeira), com o mesmo formato e ETag
+	static ResponseEntity<byte[]> responder(ResponseEntity<Map<String, Object>> resposta, ObjectMapper objectMapper)
+			throws JsonProcessingException {
+		return serializar(0, resposta, objectMapper).resposta();
+	}
+
+	private static TelaSerializada serializar(long versao, ResponseEntity<Map<String, Object>> resposta,
+			ObjectMapper objectMapper) throws JsonProcessingException {
+		return new TelaSerializada(versao, resposta.getStatusCodeValue(), objectMapper.writeValueAsBytes(resposta.getBody()));
+	}
+
+	private static final class TelaSerializada {
+		private final long versao;
+		private final int status;
+		private final byte[] corpo;
+		private final String etag;
+
+		TelaSerializada(long versao, int status, byte[] corpo) {
+			this.versao = versao;
+			this.status = status;
+			this.corpo = corpo;
+			this.etag = "\"" + DigestUtils.md5DigestAsHex(corpo) + "\"";
+		}
+
+		ResponseEntity<byte[]> resposta() {
+			return ResponseEntity.status(status)
+					.contentType(MediaType.APPLICATION_JSON)
+					.eTag(etag)
+					.body(corpo);
+		}
+	}
+}
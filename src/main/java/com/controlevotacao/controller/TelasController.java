@@ -6,15 +6,21 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import com.controlevotacao.exception.PautaAbertaNaoEncontradaException;
 import com.controlevotacao.model.Pauta;
+import com.controlevotacao.service.PautaAlteradaEvent;
 import com.controlevotacao.service.VotacaoService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -47,10 +53,38 @@ public class TelasController {
     @Value("${app.url.resultado.pauta}")
     private String urlResultadoPauta;
 
+    @Value("${app.url.tela.abertura.sessao.pauta}")
+    private String urlTelaAberturaSessaoPauta;
+
+    @Value("${app.url.tela.resultado.pauta}")
+    private String urlTelaResultadoPauta;
+
+    // quantidade de pautas por página nas telas de seleção
+    @Value("${votacao.tela.tamanho-pagina:50}")
+    private int tamanhoPagina;
+
     private final VotacaoService service;
+    private final ObjectMapper objectMapper;
 
-    public TelasController(VotacaoService service) {
+    // telas servidas já serializadas; as que dependem da situação das pautas são invalidadas pelo PautaAlteradaEvent
+    private final TelaEmCache telaCadastroPauta;
+    private final TelaEmCache telaAberturaSessaoPauta;
+    private final TelaEmCache telaResultadoPauta;
+
+    public TelasController(VotacaoService service, ObjectMapper objectMapper) {
         this.service = service;
+        this.objectMapper = objectMapper;
+        // só a primeira página das telas de seleção fica em cache
+        this.telaCadastroPauta = new TelaEmCache(this::montarTelaCadastroPauta, objectMapper);
+        this.telaAberturaSessaoPauta = new TelaEmCache(() -> montarTelaAberturaSessaoPauta(null), objectMapper);
+        this.telaResultadoPauta = new TelaEmCache(() -> montarTelaResultadoPauta(null), objectMapper);
+    }
+
+    //Uma pauta foi criada, aberta ou fechada: as listas de pautas pendentes e fechadas precisam ser montadas de novo
+    @EventListener
+    public void pautaAlterada(PautaAlteradaEvent evento) {
+        telaAberturaSessaoPauta.invalidar();
+        telaResultadoPauta.invalidar();
     }
 
     @Operation(
@@ -88,7 +122,11 @@ public class TelasController {
 	    )
 	})
 	@GetMapping("/TelaCadastroPauta")
-	public Map<String, Object> getTelaCadastroPauta() {
+	public ResponseEntity<byte[]> getTelaCadastroPauta() throws JsonProcessingException {
+	    return telaCadastroPauta.obter();
+	}
+
+	private ResponseEntity<Map<String, Object>> montarTelaCadastroPauta() {
 	    Map<String, Object> response = new LinkedHashMap<>();
 	    response.put("tipo", "FORMULARIO");
 	    response.put("titulo", "CADASTRAR PAUTA");
@@ -119,13 +157,14 @@ public class TelasController {
 	    botaoCancelar.put("url", urlCancelar); // substitui dinamicamente
 	    response.put("botaoCancelar", botaoCancelar);
 
-	    return response;
+	    return ResponseEntity.ok(response);
 	}
 
     @Operation( 
     		summary = "Obter tela de votação",
     		description = "Retorna a estrutura da tela de votação montada diretamente no método. " +
-    						  "As URLs dos botões são substituídas dinamicamente e um CPF aleatório é gerado para simulação."
+    						  "As URLs dos botões são substituídas dinamicamente e um CPF aleatório é gerado para simulação. " +
+    						  "Há um par de botões Sim/Nao para cada pauta com sessão aberta."
 	)
 	@ApiResponses(value = {
 	    @ApiResponse(responseCode = "200", description = "Tela de votação retornada com sucesso"),
@@ -134,9 +173,9 @@ public class TelasController {
 	})
 	@GetMapping("/TelaVoto")
 	public Map<String, Object> getTelaVoto() {
-	    // Busca pauta aberta
-	    String pautaAberta = service.buscarPautaAberta();
-	    if (pautaAberta == null || pautaAberta.isEmpty()) {
+	    // Busca as pautas abertas
+	    List<String> pautasAbertas = service.listarPautasAbertas();
+	    if (pautasAbertas.isEmpty()) {
 	        throw new PautaAbertaNaoEncontradaException("Não existe pauta aberta para votação");
 	    }
 
@@ -146,41 +185,47 @@ public class TelasController {
 	    // Monta estrutura JSON em memória
 	    Map<String, Object> response = new LinkedHashMap<>();
 	    response.put("tipo", "SELECAO");
-	    response.put("titulo", "Pauta " + pautaAberta);
+	    if (pautasAbertas.size() == 1) {
+	        response.put("titulo", "Pauta " + pautasAbertas.get(0));
+	    } else {
+	        response.put("titulo", "Escolha a pauta e o voto");
+	    }
 
+	    // um par de botões Sim/Nao por pauta aberta; o body leva a pauta para o voto ir à sessão certa
 	    List<Map<String, Object>> itens = new ArrayList<>();
-
-	    Map<String, Object> itemSim = new LinkedHashMap<>();
-	    itemSim.put("texto", "Sim");
-	    itemSim.put("url", urlVotoSim);
-	    Map<String, Object> bodySim = new LinkedHashMap<>();
-	    bodySim.put("codCpf", cpfGerado);
-	    itemSim.put("body", bodySim);
-	    itens.add(itemSim);
-
-	    Map<String, Object> itemNao = new LinkedHashMap<>();
-	    itemNao.put("texto", "Nao");
-	    itemNao.put("url", urlVotoNao);
-	    Map<String, Object> bodyNao = new LinkedHashMap<>();
-	    bodyNao.put("codCpf", cpfGerado);
-	    itemNao.put("body", bodyNao);
-	    itens.add(itemNao);
+	    for (String pautaAberta : pautasAbertas) {
+	        String prefixo = pautasAbertas.size() == 1 ? "" : pautaAberta + " - ";
+	        itens.add(itemVoto(prefixo + "Sim", urlVotoSim, pautaAberta, cpfGerado));
+	        itens.add(itemVoto(prefixo + "Nao", urlVotoNao, pautaAberta, cpfGerado));
+	    }
 
 	    response.put("itens", itens);
 
 	    return response;
 	}
 
+	private static Map<String, Object> itemVoto(String texto, String url, String idPauta, String cpf) {
+	    Map<String, Object> item = new LinkedHashMap<>();
+	    item.put("texto", texto);
+	    item.put("url", url);
+	    Map<String, Object> body = new LinkedHashMap<>();
+	    body.put("idPauta", idPauta);
+	    body.put("codCpf", cpf);
+	    item.put("body", body);
+	    return item;
+	}
+
     
     @Operation( 
     		summary = "Obter tela de abertura de sessão de pauta",
-    		description = "Retorna a tela para abertura de sessão de pauta. " + "Se já existir uma pauta aberta, retorna mensagem informativa. " +
+    		description = "Retorna a tela para abertura de sessão de pauta. " +
                           "Se não houver pautas pendentes, retorna 404. " + 
-    		    		  "Caso contrário, retorna a lista de pautas disponíveis para abertura." 
+    		    		  "Caso contrário, retorna a lista de pautas disponíveis para abertura, paginada: quando há mais pautas " +
+    		    		  "a tela traz botaoProximaPagina com a URL da página seguinte (parâmetro apos)." 
     ) @ApiResponses(value = {
     		@ApiResponse(
     				responseCode = "200",
-    				description = "Tela retornada com sucesso ou mensagem de pauta já aberta",
+    				description = "Tela retornada com sucesso",
     				content = @Content(
     			            mediaType = "application/json",
     			            examples = @ExampleObject(
@@ -220,17 +265,17 @@ public class TelasController {
     	    )
     })
     @GetMapping("/TelaAberturaSessaoPauta")
-    public ResponseEntity<Map<String, Object>> getTelaAberturaSessaoPauta() {
-        // Verifica se existe pauta aberta
-        String pautaAberta = service.buscarPautaAberta();
-        if (pautaAberta != null && !pautaAberta.isEmpty()) {
-            Map<String, Object> resposta = new LinkedHashMap<>();
-            resposta.put("mensagem", "Já existe uma pauta aberta.");
-            return ResponseEntity.ok(resposta);
+    public ResponseEntity<byte[]> getTelaAberturaSessaoPauta(@RequestParam(required = false) String apos)
+            throws JsonProcessingException {
+        if (apos == null) {
+            return telaAberturaSessaoPauta.obter();
         }
+        return TelaEmCache.responder(montarTelaAberturaSessaoPauta(apos), objectMapper);
+    }
 
+    private ResponseEntity<Map<String, Object>> montarTelaAberturaSessaoPauta(String apos) {
         // Busca pautas pendentes
-        List<Pauta> pendentes = service.buscarPautasPendentes();
+        List<Pauta> pendentes = service.buscarPautasPendentes(apos, tamanhoPagina);
 
         // Se não existem pautas pendentes, retorna 404
         if (pendentes == null || pendentes.isEmpty()) {
@@ -259,6 +304,7 @@ public class TelasController {
         }
 
         json.put("itens", itens);
+        adicionarProximaPagina(json, pendentes, urlTelaAberturaSessaoPauta);
 
         return ResponseEntity.ok(json);
     }
@@ -266,7 +312,8 @@ public class TelasController {
     @Operation(
     	    summary = "Obter tela de pautas fechadas",
     	    description = "Retorna a tela das pautas fechadas para escolher uma pauta e obter o resultado. " +
-    	                  "Se não existir pauta fechada, retorna mensagem informativa."
+    	                  "Se não existir pauta fechada, retorna mensagem informativa. A lista é paginada: quando há mais " +
+    	                  "pautas a tela traz botaoProximaPagina com a URL da página seguinte (parâmetro apos)."
     	)
     	@ApiResponses(value = {
     	    @ApiResponse(
@@ -307,8 +354,16 @@ public class TelasController {
     	    )
     	})
     	@GetMapping("/TelaResultadoPauta")
-    	public ResponseEntity<Map<String, Object>> getTelaResultadoPauta() {
-    	    List<Pauta> pautasFechadas = service.buscarPautasFechadas();
+    	public ResponseEntity<byte[]> getTelaResultadoPauta(@RequestParam(required = false) String apos)
+    	        throws JsonProcessingException {
+    	    if (apos == null) {
+    	        return telaResultadoPauta.obter();
+    	    }
+    	    return TelaEmCache.responder(montarTelaResultadoPauta(apos), objectMapper);
+    	}
+
+    	private ResponseEntity<Map<String, Object>> montarTelaResultadoPauta(String apos) {
+    	    List<Pauta> pautasFechadas = service.buscarPautasFechadas(apos, tamanhoPagina);
 
     	    if (pautasFechadas == null || pautasFechadas.isEmpty()) {
     	        Map<String, Object> resposta = new LinkedHashMap<>();
@@ -334,8 +389,23 @@ public class TelasController {
     	    }
 
     	    json.put("itens", itens);
+    	    adicionarProximaPagina(json, pautasFechadas, urlTelaResultadoPauta);
 
     	    return ResponseEntity.ok(json);
     	}
 
+    	//Página cheia: pode haver mais pautas, então a tela ganha o botão que pede a página seguinte à última pauta listada
+    	private void adicionarProximaPagina(Map<String, Object> json, List<Pauta> pagina, String urlTela) {
+    	    if (pagina.size() < tamanhoPagina) {
+    	        return;
+    	    }
+    	    Map<String, Object> botaoProximaPagina = new LinkedHashMap<>();
+    	    botaoProximaPagina.put("texto", "Mais pautas");
+    	    botaoProximaPagina.put("url", UriComponentsBuilder.fromUriString(urlTela)
+    	            .queryParam("apos", pagina.get(pagina.size() - 1).getIdPauta())
+    	            .encode()
+    	            .toUriString());
+    	    json.put("botaoProximaPagina", botaoProximaPagina);
+    	}
+
 }
\ No newline at end of file
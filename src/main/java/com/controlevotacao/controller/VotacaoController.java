@@ -1,18 +1,36 @@
 package com.controlevotacao.controller;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.service.AuditoriaService;
+import com.controlevotacao.service.DifusorPlacar;
+import com.controlevotacao.service.ExportacaoVotosService;
+import com.controlevotacao.service.ValidacaoCpfService;
+import com.controlevotacao.service.VotacaoLoteService;
 import com.controlevotacao.service.VotacaoService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -26,10 +44,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 public class VotacaoController {
 
 	private final VotacaoService service;
+	private final ValidacaoCpfService validacaoCpfService;
+	private final VotacaoLoteService votacaoLoteService;
+	private final DifusorPlacar difusorPlacar;
+	private final AuditoriaService auditoriaService;
+	private final ExportacaoVotosService exportacaoVotosService;
 	private static final Logger log = LoggerFactory.getLogger(VotacaoController.class);
 
-	public VotacaoController(VotacaoService service) {
+	public VotacaoController(VotacaoService service, ValidacaoCpfService validacaoCpfService,
+			                 VotacaoLoteService votacaoLoteService, DifusorPlacar difusorPlacar,
+			                 AuditoriaService auditoriaService, ExportacaoVotosService exportacaoVotosService) {
 		this.service = service;
+		this.validacaoCpfService = validacaoCpfService;
+		this.votacaoLoteService = votacaoLoteService;
+		this.difusorPlacar = difusorPlacar;
+		this.auditoriaService = auditoriaService;
+		this.exportacaoVotosService = exportacaoVotosService;
 	}
 
 	@Operation( summary = "Cria uma nova pauta",
@@ -98,13 +128,14 @@ public class VotacaoController {
 	}
 
 	@Operation( summary = "Registrar voto SIM",
-			    description = "Registra um voto 'SIM' na pauta aberta. É necessário informar o CPF do votante.",
+			    description = "Registra um voto 'SIM' na pauta informada, que deve estar com sessão aberta. É necessário informar o CPF do votante. "
+			    		+ "Sem idPauta o voto vai para a única pauta aberta; se houver mais de uma, retorna 400.",
 	    		requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
-	    		        description = "JSON contendo o CPF do votante",
+	    		        description = "JSON contendo a pauta e o CPF do votante",
 	    		        required = true,
 	    		        content = @Content(
 	    		            mediaType = "application/json",
-	    		            examples = @ExampleObject(value = "{ \"codCpf\": \"12345678901\" }")
+	    		            examples = @ExampleObject(value = "{ \"idPauta\": \"123\", \"codCpf\": \"12345678901\" }")
 	    		        )
 	    		)
 	)
@@ -119,7 +150,7 @@ public class VotacaoController {
 			),
 			@ApiResponse(
 					responseCode = "400",
-					description = "Não é possível votar em uma pauta fechada",
+					description = "Não é possível votar em uma pauta fechada ou há mais de uma pauta aberta e a pauta não foi informada",
 					content = @Content(
 				            mediaType = "application/json",
 				            examples = @ExampleObject(value = "{ \"mensagem\": \"Não é possível votar em uma pauta fechada.\" }")
@@ -151,20 +182,22 @@ public class VotacaoController {
 			)
 	})
 	@PostMapping("/votar/sim")    
-	public ResponseEntity<Map<String, String>> votarSim(@RequestBody Map<String, String> body) {
+	public CompletableFuture<ResponseEntity<Map<String, String>>> votarSim(@RequestBody Map<String, String> body) {
 	    log.debug("Request recebido em /votar/sim: {}", body);
-	    return service.votar(body.get("codCpf"), "SIM");
+	    // a thread do Tomcat é liberada enquanto o cpf é validado e o voto gravado
+	    return service.votarAsync(body.get("idPauta"), body.get("codCpf"), TipoVoto.SIM);
 	}
 
 	@Operation( 
 			summary = "Registrar voto NAO",
-		    description = "Registra um voto 'NAO' na pauta aberta. É necessário informar o CPF do votante.",
+		    description = "Registra um voto 'NAO' na pauta informada, que deve estar com sessão aberta. É necessário informar o CPF do votante. "
+		    		+ "Sem idPauta o voto vai para a única pauta aberta; se houver mais de uma, retorna 400.",
     		requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
-    		        description = "JSON contendo o CPF do votante",
+    		        description = "JSON contendo a pauta e o CPF do votante",
     		        required = true,
     		        content = @Content(
     		            mediaType = "application/json",
-    		            examples = @ExampleObject(value = "{ \"codCpf\": \"12345678901\" }")
+    		            examples = @ExampleObject(value = "{ \"idPauta\": \"123\", \"codCpf\": \"12345678901\" }")
     		        )
     		)
 	)
@@ -179,7 +212,7 @@ public class VotacaoController {
 		),
 		@ApiResponse(
 				responseCode = "400",
-				description = "Não é possível votar em uma pauta fechada",
+				description = "Não é possível votar em uma pauta fechada ou há mais de uma pauta aberta e a pauta não foi informada",
 				content = @Content(
 			            mediaType = "application/json",
 			            examples = @ExampleObject(value = "{ \"mensagem\": \"Não é possível votar em uma pauta fechada.\" }")
@@ -211,14 +244,50 @@ public class VotacaoController {
 		)
 	})
 	@PostMapping("/votar/nao")
-	public ResponseEntity<Map<String, String>> votarNao(@RequestBody Map<String, String> body) {
+	public CompletableFuture<ResponseEntity<Map<String, String>>> votarNao(@RequestBody Map<String, String> body) {
 	    log.debug("Request recebido em /votar/nao: {}", body);
-	    return service.votar(body.get("codCpf"), "NAO");
+	    // a thread do Tomcat é liberada enquanto o cpf é validado e o voto gravado
+	    return service.votarAsync(body.get("idPauta"), body.get("codCpf"), TipoVoto.NAO);
+	}
+
+	@Operation(
+			summary = "Registrar votos em lote",
+		    description = "Recebe um voto por linha (NDJSON) e devolve uma linha de resultado por voto, na mesma ordem, "
+		    		+ "à medida que são processados. Cada voto vai para a pauta do seu idPauta (sem idPauta, para a única pauta aberta). "
+		    		+ "Resultados: REGISTRADO, CPF_DUPLICADO, FECHADA, NAO_ENCONTRADA, "
+		    		+ "SEM_PAUTA_ABERTA, PAUTA_NAO_INFORMADA, CPF_INVALIDO, CPF_NAO_HABILITADO, VOTO_INVALIDO, ERRO_VALIDACAO_CPF, ERRO e JSON_INVALIDO "
+		    		+ "(este último encerra o processamento).",
+    		requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+    		        description = "Votos, um objeto JSON por linha",
+    		        required = true,
+    		        content = @Content(
+    		            mediaType = "application/x-ndjson",
+    		            examples = @ExampleObject(value = "{ \"idPauta\": \"123\", \"codCpf\": \"52998224725\", \"voto\": \"SIM\" }\n{ \"idPauta\": \"124\", \"codCpf\": \"11144477735\", \"voto\": \"NAO\" }")
+    		        )
+    		)
+	)
+	@ApiResponses(value = {
+		@ApiResponse(
+				responseCode = "200",
+				description = "Resultados dos votos, um por linha",
+				content = @Content(
+			            mediaType = "application/x-ndjson",
+			            examples = @ExampleObject(value = "{\"linha\":1,\"codCpf\":\"52998224725\",\"resultado\":\"REGISTRADO\"}\n{\"linha\":2,\"codCpf\":\"11144477735\",\"resultado\":\"CPF_DUPLICADO\"}")
+			    )
+		)
+	})
+	@PostMapping("/votar/lote")
+	public void votarLote(HttpServletRequest request, HttpServletResponse response) throws IOException {
+	    log.debug("Request recebido em /votar/lote");
+	    response.setContentType("application/x-ndjson");
+	    response.setCharacterEncoding("UTF-8");
+	    // o corpo é lido e a resposta escrita aos poucos, sem carregar o lote inteiro em memória
+	    votacaoLoteService.votarLote(request.getInputStream(), response.getOutputStream());
 	}
 
 
 	@Operation( summary = "Abrir sessão de votação",
-			    description = "Abre uma sessão de votação para a pauta informada. Só é permitido abrir se não houver outra sessão aberta.",
+			    description = "Abre uma sessão de votação para a pauta informada, que deve estar pendente. Sessões de pautas diferentes podem ficar abertas ao mesmo tempo.",
 	    		requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
 	    		        description = "JSON contendo o ID da pauta e opcionalmente a duração da sessão em minutos",
 	    		        required = true,
@@ -240,11 +309,11 @@ public class VotacaoController {
 			        )),
 			@ApiResponse(
 				responseCode = "400",
-				description = "Não é possível abrir uma pauta já fechada ou já existe uma sessão aberta",
+				description = "Não é possível abrir uma pauta já fechada ou a sessão da pauta já está aberta",
 				content = @Content(
 			            mediaType = "application/json",
 			            examples = {
-			                @ExampleObject(name = "Pauta fechada", value = "{ \"mensagem\": \"Não é possível abrir uma pauta já fechada ou já existe uma sessão aberta.\" }"),
+			                @ExampleObject(name = "Pauta fechada", value = "{ \"mensagem\": \"Não é possível abrir uma pauta já fechada.\" }"),
 			            }
 			        )),
 			@ApiResponse(
@@ -284,7 +353,7 @@ public class VotacaoController {
 	            resposta.put("mensagem", "Não é possível abrir uma pauta já fechada.");
 	            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(resposta);
 	        case "JA_ABERTA":
-	            resposta.put("mensagem", "Já existe uma sessão aberta.");
+	            resposta.put("mensagem", "A sessão desta pauta já está aberta.");
 	            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(resposta);
 	        case "ABERTA":
 	            resposta.put("mensagem", "Sessão aberta com sucesso.");
@@ -416,4 +485,255 @@ public class VotacaoController {
 
 	    return ResponseEntity.ok(sucesso);
 	}
+
+	@Operation(
+		    summary = "Obter resultado parcial da sessão aberta",
+		    description = "Retorna a quantidade parcial de votos SIM e NÃO da pauta informada em idPauta, que deve estar com sessão aberta, " +
+		                  "lida dos contadores em memória sem consultar o banco. Sem idPauta usa a única pauta aberta; " +
+		                  "se houver mais de uma retorna 400. Se não houver sessão aberta retorna 404."
+	)
+	@ApiResponses(value = {
+		    @ApiResponse(
+		        responseCode = "200",
+		        description = "Resultado parcial retornado com sucesso",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"idPauta\": \"pauta1\", \"Sim\": \"10\", \"Não\": \"5\" }"
+		            )
+		        )
+		    ),
+		    @ApiResponse(
+		        responseCode = "400",
+		        description = "Existe mais de uma pauta aberta e a pauta não foi informada",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"mensagem\": \"Existe mais de uma pauta aberta: informe o idPauta.\" }"
+		            )
+		        )
+		    ),
+		    @ApiResponse(
+		        responseCode = "404",
+		        description = "Não existe pauta aberta para votação",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"mensagem\": \"Não existe pauta aberta para votação.\" }"
+		            )
+		        )
+		    )
+	})
+	@GetMapping("/resultadoParcial")
+	public ResponseEntity<Map<String, String>> resultadoParcial(@RequestParam(required = false) String idPauta) {
+	    Map<String, Object> resultado = service.obterResultadoParcial(idPauta);
+
+	    if (resultado.containsKey("erro")) {
+	        Map<String, String> resposta = new HashMap<>();
+	        if ("PAUTA_NAO_INFORMADA".equals(resultado.get("erro"))) {
+	            resposta.put("mensagem", "Existe mais de uma pauta aberta: informe o idPauta.");
+	            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(resposta);
+	        }
+	        resposta.put("mensagem", "Não existe pauta aberta para votação.");
+	        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(resposta);
+	    }
+
+	    Map<String, String> parcial = new LinkedHashMap<>();
+	    parcial.put("idPauta", (String) resultado.get("idPauta"));
+	    parcial.put("Sim", String.valueOf(resultado.get("Sim")));
+	    parcial.put("Não", String.valueOf(resultado.get("Não")));
+
+	    return ResponseEntity.ok(parcial);
+	}
+
+	@Operation(
+		    summary = "Auditar o resultado de uma pauta fechada",
+		    description = "Reconta os votos gravados da pauta em blocos por faixa de cpf, em paralelo, conferindo os dígitos verificadores "
+		    		+ "de cada cpf, o código do voto e que nenhum cpf aparece duas vezes, e compara a recontagem com o resultado gravado "
+		    		+ "no fechamento e com o do cache. confere só é true se não houver voto irregular e os três resultados forem iguais. "
+		    		+ "O relatório traz a quantidade de votos e o tempo de cada bloco."
+	)
+	@ApiResponses(value = {
+		    @ApiResponse(
+		        responseCode = "200",
+		        description = "Auditoria concluída; o resultado está em confere",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"idPauta\": \"pauta1\", \"confere\": true, \"Sim\": 10, \"Não\": 5, "
+		                		+ "\"resultadoGravado\": { \"Sim\": 10, \"Não\": 5 }, \"resultadoEmCache\": { \"Sim\": 10, \"Não\": 5 }, "
+		                		+ "\"cpfsInvalidos\": 0, \"votosInvalidos\": 0, \"votosForaDaParticao\": 0, \"chavesForaDeOrdem\": 0, "
+		                		+ "\"exemplosIrregulares\": [], \"particoes\": 1, \"duracaoMs\": 3, "
+		                		+ "\"blocos\": [ { \"particao\": 0, \"cpfInicial\": \"00000000191\", \"cpfFinal\": \"99999999999\", "
+		                		+ "\"votos\": 15, \"duracaoMs\": 1 } ] }"
+		            )
+		        )
+		    ),
+		    @ApiResponse(
+		        responseCode = "404",
+		        description = "Pauta não encontrada",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"mensagem\": \"Pauta não encontrada.\" }"
+		            )
+		        )
+		    ),
+		    @ApiResponse(
+		        responseCode = "400",
+		        description = "Pauta não está fechada",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"mensagem\": \"A pauta não está fechada.\" }"
+		            )
+		        )
+		    ),
+		    @ApiResponse(
+		        responseCode = "500",
+		        description = "Erro interno na auditoria",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"mensagem\": \"Erro ao auditar a pauta.\" }"
+		            )
+		        )
+		    )
+	})
+	@PostMapping("/auditoria/{idPauta}")
+	public ResponseEntity<Map<String, Object>> auditoria(@PathVariable String idPauta) {
+	    log.debug("Request recebido em /auditoria: {}", idPauta);
+
+	    Map<String, Object> resultado = auditoriaService.auditar(idPauta);
+
+	    if (resultado.containsKey("erro")) {
+	        Map<String, Object> resposta = new HashMap<>();
+	        switch ((String) resultado.get("erro")) {
+	            case "NAO_ENCONTRADA":
+	                resposta.put("mensagem", "Pauta não encontrada.");
+	                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(resposta);
+	            case "NAO_FECHADA":
+	                resposta.put("mensagem", "A pauta não está fechada.");
+	                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(resposta);
+	            default:
+	                resposta.put("mensagem", "Erro ao auditar a pauta.");
+	                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(resposta);
+	        }
+	    }
+
+	    return ResponseEntity.ok(resultado);
+	}
+
+	@Operation(
+		    summary = "Exportar os votos de uma pauta",
+		    description = "Escreve os votos da pauta, em ordem de cpf, em CSV (formato=csv, padrão) ou NDJSON (formato=ndjson). "
+		    		+ "Os votos são lidos do banco e escritos na resposta aos poucos, então pautas grandes não são carregadas em memória."
+	)
+	@ApiResponses(value = {
+		    @ApiResponse(
+		        responseCode = "200",
+		        description = "Votos da pauta",
+		        content = {
+		            @Content(mediaType = "text/csv", examples = @ExampleObject(value = "cpf,voto\n11144477735,SIM\n52998224725,NAO")),
+		            @Content(mediaType = "application/x-ndjson",
+		                     examples = @ExampleObject(value = "{\"cpf\":\"11144477735\",\"voto\":\"SIM\"}\n{\"cpf\":\"52998224725\",\"voto\":\"NAO\"}"))
+		        }
+		    ),
+		    @ApiResponse(
+		        responseCode = "400",
+		        description = "Formato inválido",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"mensagem\": \"Formato inválido: use csv ou ndjson.\" }"
+		            )
+		        )
+		    ),
+		    @ApiResponse(
+		        responseCode = "404",
+		        description = "Pauta não encontrada",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"mensagem\": \"Pauta não encontrada.\" }"
+		            )
+		        )
+		    )
+	})
+	@GetMapping("/exportacao/{idPauta}")
+	public void exportarVotos(@PathVariable String idPauta,
+			                  @RequestParam(defaultValue = ExportacaoVotosService.CSV) String formato,
+			                  HttpServletResponse response) throws IOException {
+	    log.debug("Request recebido em /exportacao: {} ({})", idPauta, formato);
+	    response.setCharacterEncoding("UTF-8");
+	    if (!ExportacaoVotosService.formatoValido(formato)) {
+	        escreverMensagem(response, HttpStatus.BAD_REQUEST, "Formato inválido: use csv ou ndjson.");
+	        return;
+	    }
+
+	    Optional<Long> numPauta = exportacaoVotosService.obterNumPauta(idPauta);
+	    if (!numPauta.isPresent()) {
+	        escreverMensagem(response, HttpStatus.NOT_FOUND, "Pauta não encontrada.");
+	        return;
+	    }
+
+	    response.setContentType(ExportacaoVotosService.CSV.equals(formato) ? "text/csv" : "application/x-ndjson");
+	    response.setHeader("Content-Disposition", "attachment; filename=\"votos-" + idPauta.replaceAll("[^A-Za-z0-9_-]", "_")
+	    		+ "." + formato + "\"");
+	    // os votos são escritos na resposta à medida que são lidos
+	    exportacaoVotosService.exportar(numPauta.get(), formato, response.getOutputStream());
+	}
+
+	private static void escreverMensagem(HttpServletResponse response, HttpStatus status, String mensagem) throws IOException {
+	    response.setStatus(status.value());
+	    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+	    response.getOutputStream().write(("{\"mensagem\":\"" + mensagem + "\"}").getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Operation(
+		    summary = "Acompanhar o placar das sessões abertas em tempo real",
+		    description = "Abre um fluxo Server-Sent Events com o placar da pauta informada em idPauta ou, sem idPauta, de todas as "
+		    		+ "pautas com sessão aberta. O evento \"placar\" é enviado ao conectar e sempre que a contagem de uma pauta mudar, "
+		    		+ "no máximo um por pauta a cada intervalo configurado, e o evento \"encerrada\" traz o placar final quando a sessão "
+		    		+ "é fechada. A conexão continua aberta e recebe as próximas sessões."
+	)
+	@ApiResponses(value = {
+		    @ApiResponse(
+		        responseCode = "200",
+		        description = "Fluxo de eventos com o placar",
+		        content = @Content(
+		            mediaType = "text/event-stream",
+		            examples = @ExampleObject(
+		                value = "event:placar\ndata:{\"idPauta\":\"pauta1\",\"Sim\":\"10\",\"Não\":\"5\"}\n\n"
+		                		+ "event:encerrada\ndata:{\"idPauta\":\"pauta1\",\"Sim\":\"12\",\"Não\":\"7\"}"
+		            )
+		        )
+		    )
+	})
+	@GetMapping(path = "/resultadoPauta/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter resultadoPautaStream(@RequestParam(required = false) String idPauta) {
+	    log.debug("Request recebido em /resultadoPauta/stream: {}", idPauta);
+	    return difusorPlacar.assinar(idPauta);
+	}
+
+	@Operation(
+		    summary = "Estatísticas do cache de validação de cpf",
+		    description = "Retorna o tamanho do cache de respostas do serviço externo de validação de cpf e as contagens de acertos e faltas."
+	)
+	@ApiResponses(value = {
+		    @ApiResponse(
+		        responseCode = "200",
+		        description = "Estatísticas retornadas com sucesso",
+		        content = @Content(
+		            mediaType = "application/json",
+		            examples = @ExampleObject(
+		                value = "{ \"tamanho\": 120, \"acertos\": 950, \"faltas\": 130, \"taxaAcerto\": 0.88, \"consultasComFalha\": 2, \"remocoes\": 0 }"
+		            )
+		        )
+		    )
+	})
+	@GetMapping("/validacaoCpf/estatisticas")
+	public ResponseEntity<Map<String, Object>> estatisticasValidacaoCpf() {
+	    return ResponseEntity.ok(validacaoCpfService.obterEstatisticas());
+	}
 }
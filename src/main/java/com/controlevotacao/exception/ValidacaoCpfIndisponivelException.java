@@ -0,0 +1,15 @@
+package com.controlevotacao.exception;
+
+//Lançada quando o serviço de validação de cpf não pode ser consultado: circuito aberto,
+//limite de chamadas simultâneas atingido ou falha na chamada
+public class ValidacaoCpfIndisponivelException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public ValidacaoCpfIndisponivelException(String msg) {
+        super(msg);
+    }
+
+	public ValidacaoCpfIndisponivelException(String msg, Throwable causa) {
+        super(msg, causa);
+    }
+}
@@ -2,18 +2,34 @@ package com.controlevotacao.model;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Generated;
+import org.hibernate.annotations.GenerationTime;
 
 @Entity
 public class Pauta {
 
     @Id
     private String idPauta;
-    private String statusPauta;
+
+    // chave numérica gerada pelo banco, referenciada pelos votos em pauta_votacao
+    @Generated(GenerationTime.INSERT)
+    @Column(name = "num_pauta", insertable = false, updatable = false)
+    private Long numPauta;
+
+    private StatusPauta statusPauta;
     private LocalDateTime inicioSessao;
     private LocalDateTime fimSessao;
 
+    // versão da linha: incrementada a cada alteração, inclusive pelas transições de sessão, para que uma instância
+    // não sobrescreva com uma cópia desatualizada a pauta alterada por outra
+    @Version
+    private Long versao;
+
     public String getIdPauta() {
         return idPauta;
     }
@@ -22,11 +38,15 @@ public class Pauta {
         this.idPauta = idPauta;
     }
 
-    public String getStatusPauta() {
+    public Long getNumPauta() {
+        return numPauta;
+    }
+
+    public StatusPauta getStatusPauta() {
         return statusPauta;
     }
 
-    public void setStatusPauta(String statusPauta) {
+    public void setStatusPauta(StatusPauta statusPauta) {
         this.statusPauta = statusPauta;
     }
 
@@ -44,5 +64,9 @@ public class Pauta {
 
 	public void setFimSessao(LocalDateTime fimSessao) {
 		this.fimSessao = fimSessao;
-	}  
+	}
+
+    public Long getVersao() {
+        return versao;
+    }  
 }
@@ -0,0 +1,51 @@
+package com.controlevotacao.model;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+// resultado de uma pauta fechada, apurado uma única vez no fechamento da sessão: depois dele a contagem não muda
+@Entity
+@Table(name = "pauta_resultado")
+public class PautaResultado {
+
+    @Id
+    private String idPauta;
+
+    @Column(name = "votos_sim", nullable = false)
+    private long votosSim;
+
+    @Column(name = "votos_nao", nullable = false)
+    private long votosNao;
+
+    @Column(name = "data_fechamento", nullable = false)
+    private LocalDateTime dataFechamento;
+
+    public PautaResultado() {}
+
+    public PautaResultado(String idPauta, long votosSim, long votosNao, LocalDateTime dataFechamento) {
+        this.idPauta = idPauta;
+        this.votosSim = votosSim;
+        this.votosNao = votosNao;
+        this.dataFechamento = dataFechamento;
+    }
+
+    public String getIdPauta() {
+        return idPauta;
+    }
+
+    public long getVotosSim() {
+        return votosSim;
+    }
+
+    public long getVotosNao() {
+        return votosNao;
+    }
+
+    public LocalDateTime getDataFechamento() {
+        return dataFechamento;
+    }
+}
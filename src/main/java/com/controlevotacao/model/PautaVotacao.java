@@ -1,36 +1,60 @@
 package com.controlevotacao.model;
 
-import javax.persistence.EmbeddedId;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Id;
 
 @Entity
 public class PautaVotacao {
 
-    @EmbeddedId
-    private PautaVotacaoId id;  // chave composta
+    // fator que separa a chave numérica da pauta do cpf (11 dígitos) dentro da chave do voto
+    public static final long FATOR_PAUTA = 100_000_000_000L;
 
-    private String voto;
+    // chave única do voto: num_pauta * FATOR_PAUTA + cpf. Um único BIGINT como chave primária
+    // dispensa o índice secundário da chave composta e mantém os votos de uma pauta contíguos
+    @Id
+    @Column(name = "id_voto")
+    private Long idVoto;
+
+    private TipoVoto voto;
 
     public PautaVotacao() {}
 
-    public PautaVotacao(PautaVotacaoId id, String voto) {
-        this.id = id;
+    public PautaVotacao(long numPauta, long codCpf, TipoVoto voto) {
+        this.idVoto = chave(numPauta, codCpf);
         this.voto = voto;
     }
 
-    public PautaVotacaoId getId() {
-        return id;
+    public static long chave(long numPauta, long codCpf) {
+        return numPauta * FATOR_PAUTA + codCpf;
+    }
+
+    // primeira chave possível da pauta; os votos dela ficam na faixa [inicioFaixa, inicioFaixa + FATOR_PAUTA)
+    public static long inicioFaixa(long numPauta) {
+        return numPauta * FATOR_PAUTA;
+    }
+
+    public Long getIdVoto() {
+        return idVoto;
+    }
+
+    public void setIdVoto(Long idVoto) {
+        this.idVoto = idVoto;
+    }
+
+    public long getNumPauta() {
+        return idVoto / FATOR_PAUTA;
     }
 
-    public void setId(PautaVotacaoId id) {
-        this.id = id;
+    public long getCodCpf() {
+        return idVoto % FATOR_PAUTA;
     }
 
-    public String getVoto() {
+    public TipoVoto getVoto() {
         return voto;
     }
 
-    public void setVoto(String voto) {
+    public void setVoto(TipoVoto voto) {
         this.voto = voto;
     }
 }
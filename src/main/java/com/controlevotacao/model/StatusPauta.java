@@ -0,0 +1,27 @@
+package com.controlevotacao.model;
+
+//Situação da pauta; é gravada em status_pauta com a descrição usada desde a primeira versão do banco
+public enum StatusPauta {
+    PENDENTE("Pendente"),
+    ABERTA("Aberta"),
+    FECHADA("Fechada");
+
+    private final String descricao;
+
+    StatusPauta(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    public static StatusPauta deDescricao(String descricao) {
+        for (StatusPauta status : values()) {
+            if (status.descricao.equalsIgnoreCase(descricao)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Situação de pauta desconhecida: " + descricao);
+    }
+}
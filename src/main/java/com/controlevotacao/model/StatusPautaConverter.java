@@ -0,0 +1,19 @@
+package com.controlevotacao.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+//Converte o StatusPauta para a coluna VARCHAR status_pauta ("Pendente", "Aberta", "Fechada")
+@Converter(autoApply = true)
+public class StatusPautaConverter implements AttributeConverter<StatusPauta, String> {
+
+    @Override
+    public String convertToDatabaseColumn(StatusPauta status) {
+        return status == null ? null : status.getDescricao();
+    }
+
+    @Override
+    public StatusPauta convertToEntityAttribute(String descricao) {
+        return descricao == null ? null : StatusPauta.deDescricao(descricao);
+    }
+}
@@ -0,0 +1,21 @@
+package com.controlevotacao.model;
+
+//Tipo do voto; é gravado em pauta_votacao como um único byte (SIM=1, NAO=0)
+public enum TipoVoto {
+    NAO((byte) 0),
+    SIM((byte) 1);
+
+    private final byte codigo;
+
+    TipoVoto(byte codigo) {
+        this.codigo = codigo;
+    }
+
+    public byte getCodigo() {
+        return codigo;
+    }
+
+    public static TipoVoto deCodigo(byte codigo) {
+        return codigo == 1 ? SIM : NAO;
+    }
+}
@@ -0,0 +1,19 @@
+package com.controlevotacao.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+//Converte o TipoVoto para a coluna TINYINT de pauta_votacao
+@Converter(autoApply = true)
+public class TipoVotoConverter implements AttributeConverter<TipoVoto, Byte> {
+
+    @Override
+    public Byte convertToDatabaseColumn(TipoVoto voto) {
+        return voto == null ? null : voto.getCodigo();
+    }
+
+    @Override
+    public TipoVoto convertToEntityAttribute(Byte codigo) {
+        return codigo == null ? null : TipoVoto.deCodigo(codigo);
+    }
+}
@@ -0,0 +1,105 @@
+package com.controlevotacao.repository;
+
+import java.util.List;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+//Tabelas usadas para coordenar várias instâncias da aplicação no mesmo banco (schema.sql):
+//lider_cluster guarda a concessão (lease) de cada papel exclusivo e evento_pauta as alterações de pauta
+//que as outras instâncias precisam aplicar no estado em memória. Os prazos usam o relógio do banco.
+@Repository
+public class CoordenacaoClusterRepository {
+
+    private static final String SQL_CRIAR_PAPEL =
+            "INSERT INTO lider_cluster (papel, id_no, expira_em) VALUES (?, NULL, TIMESTAMP '1970-01-01 00:00:00')";
+
+    // renova a concessão de quem já a tem ou toma a que venceu
+    private static final String SQL_RENOVAR =
+            "UPDATE lider_cluster SET id_no = ?, expira_em = DATEADD(MILLISECOND, ?, LOCALTIMESTAMP) "
+            + "WHERE papel = ? AND (id_no = ? OR expira_em < LOCALTIMESTAMP)";
+
+    private static final String SQL_LIBERAR =
+            "UPDATE lider_cluster SET expira_em = TIMESTAMP '1970-01-01 00:00:00' WHERE papel = ? AND id_no = ?";
+
+    private static final String SQL_INSERIR_EVENTO =
+            "INSERT INTO evento_pauta (id_pauta, status_pauta, id_no) VALUES (?, ?, ?)";
+
+    private static final String SQL_EVENTOS_RECENTES =
+            "SELECT id_evento, id_pauta, status_pauta, id_no FROM evento_pauta "
+            + "WHERE criado_em >= DATEADD(MILLISECOND, ?, LOCALTIMESTAMP) ORDER BY id_evento";
+
+    private static final String SQL_APAGAR_EVENTOS =
+            "DELETE FROM evento_pauta WHERE criado_em < DATEADD(MILLISECOND, ?, LOCALTIMESTAMP)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CoordenacaoClusterRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // cria a linha do papel, se ainda não existir
+    public void criarPapel(String papel) {
+        try {
+            jdbcTemplate.update(SQL_CRIAR_PAPEL, papel);
+        } catch (DuplicateKeyException e) {
+            // já criada por esta ou por outra instância
+        }
+    }
+
+    // tenta renovar (ou tomar, se vencida) a concessão do papel por duracaoMs; true se a instância ficou com ela
+    public boolean renovarConcessao(String papel, String idNo, long duracaoMs) {
+        return jdbcTemplate.update(SQL_RENOVAR, idNo, duracaoMs, papel, idNo) == 1;
+    }
+
+    // devolve a concessão para outra instância poder tomá-la sem esperar o prazo
+    public void liberarConcessao(String papel, String idNo) {
+        jdbcTemplate.update(SQL_LIBERAR, papel, idNo);
+    }
+
+    public void inserirEvento(String idPauta, String statusPauta, String idNo) {
+        jdbcTemplate.update(SQL_INSERIR_EVENTO, idPauta, statusPauta, idNo);
+    }
+
+    // eventos gravados nos últimos janelaMs milissegundos, em ordem de gravação
+    public List<EventoPauta> buscarEventosRecentes(long janelaMs) {
+        return jdbcTemplate.query(SQL_EVENTOS_RECENTES, (rs, linha) -> new EventoPauta(
+                rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)), -janelaMs);
+    }
+
+    public int apagarEventosAnteriores(long idadeMs) {
+        return jdbcTemplate.update(SQL_APAGAR_EVENTOS, -idadeMs);
+    }
+
+    // alteração de pauta registrada por uma instância
+    public static final class EventoPauta {
+        private final long idEvento;
+        private final String idPauta;
+        private final String statusPauta;
+        private final String idNo;
+
+        EventoPauta(long idEvento, String idPauta, String statusPauta, String idNo) {
+            this.idEvento = idEvento;
+            this.idPauta = idPauta;
+            this.statusPauta = statusPauta;
+            this.idNo = idNo;
+        }
+
+        public long getIdEvento() {
+            return idEvento;
+        }
+
+        public String getIdPauta() {
+            return idPauta;
+        }
+
+        public String getStatusPauta() {
+            return statusPauta;
+        }
+
+        public String getIdNo() {
+            return idNo;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.controlevotacao.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.controlevotacao.model.PautaVotacao;
+
+//Distribuição dos votos entre tabelas de mesma estrutura (partições) pelo cpf, para que a árvore de cada tabela e a
+//disputa pela escrita nela não cresçam com o volume total de votos. Com uma partição (padrão) os votos ficam em
+//pauta_votacao; com K partições, em pauta_votacao_p0 .. pauta_votacao_p{K-1}, e o voto vai para a partição
+//(cpf / 100) mod K, o número do cpf sem os dígitos verificadores. Todos os votos de um cpf ficam na mesma partição,
+//então a chave primária de cada tabela continua garantindo um voto por cpf na pauta. As leituras de uma pauta
+//consultam as partições em paralelo e juntam os resultados. Cada consulta paralela ocupa uma conexão do Hikari, então
+//as threads são limitadas à metade de spring.datasource.hikari.maximum-pool-size, deixando o resto para os votos.
+//Dentro de uma transação as partições são consultadas em sequência na própria thread, pela conexão da transação:
+//outras conexões não veriam o que ela ainda não confirmou e esperariam por conexões enquanto ela segura a sua.
+//A quantidade de partições em uso fica em particionamento_votos; se a propriedade mudar, os votos são redistribuídos
+//na subida, antes de o estado ser carregado do banco.
+@Component
+public class ParticoesVotos {
+
+    private static final Logger log = LoggerFactory.getLogger(ParticoesVotos.class);
+
+    static final String TABELA_UNICA = "pauta_votacao";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int quantidade;
+    private final List<String> tabelas;
+    private final ExecutorService executor;
+
+    public ParticoesVotos(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${votacao.armazenamento.particoes:1}") int quantidade,
+                          @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximoConexoes) {
+        if (quantidade < 1) {
+            throw new IllegalArgumentException("votacao.armazenamento.particoes deve ser maior que zero: " + quantidade);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.quantidade = quantidade;
+        this.tabelas = tabelas(quantidade);
+        this.executor = quantidade > 1
+                ? Executors.newFixedThreadPool(threads(quantidade, maximoConexoes),
+                        new CustomizableThreadFactory("particoes-votos-"))
+                : null;
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        for (String tabela : tabelas) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + tabela + " (id_voto BIGINT PRIMARY KEY, voto TINYINT NOT NULL)");
+        }
+        List<Integer> gravada = jdbcTemplate.queryForList("SELECT particoes FROM particionamento_votos WHERE id = 1", Integer.class);
+        int anterior = gravada.isEmpty() ? 1 : gravada.get(0);
+        if (anterior != quantidade) {
+            redistribuir(anterior);
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    public List<String> getTabelas() {
+        return tabelas;
+    }
+
+    //Índice da partição do voto
+    public int indice(long idVoto) {
+        return (int) ((idVoto % PautaVotacao.FATOR_PAUTA) / 100 % quantidade);
+    }
+
+    public String tabela(long idVoto) {
+        return tabelas.get(indice(idVoto));
+    }
+
+    //Aplica a consulta a cada partição, pelo índice dela, em paralelo quando há mais de uma e não há transação em
+    //andamento, e devolve os resultados na ordem das partições
+    public <T> List<T> emCadaParticao(IntFunction<T> consulta) {
+        if (executor == null) {
+            return Collections.singletonList(consulta.apply(0));
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            List<T> resultados = new ArrayList<>(quantidade);
+            for (int i = 0; i < quantidade; i++) {
+                resultados.add(consulta.apply(i));
+            }
+            return resultados;
+        }
+        List<CompletableFuture<T>> parciais = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            int particao = i;
+            parciais.add(CompletableFuture.supplyAsync(() -> consulta.apply(particao), executor));
+        }
+        List<T> resultados = new ArrayList<>(quantidade);
+        for (CompletableFuture<T> parcial : parciais) {
+            resultados.add(parcial.join());
+        }
+        return resultados;
+    }
+
+    //Threads das consultas paralelas: uma por partição, limitadas aos processadores e à metade das conexões do banco
+    private static int threads(int quantidade, int maximoConexoes) {
+        int threads = Math.min(quantidade, Runtime.getRuntime().availableProcessors());
+        return Math.max(1, Math.min(threads, maximoConexoes / 2));
+    }
+
+    //Move os votos da distribuição anterior para a atual, em uma transação, e apaga as tabelas que deixaram de ser usadas
+    private void redistribuir(int anterior) {
+        List<String> origens = tabelas(anterior);
+        log.info("Redistribuindo os votos de {} para {} partições", anterior, quantidade);
+        String rota = rota(quantidade);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String origem : origens) {
+                for (int i = 0; i < quantidade; i++) {
+                    if (!origem.equals(tabelas.get(i))) {
+                        jdbcTemplate.update("INSERT INTO " + tabelas.get(i) + " (id_voto, voto) SELECT id_voto, voto FROM "
+                                + origem + " WHERE " + rota + " = " + i + " ORDER BY id_voto");
+                    }
+                }
+                int destino = tabelas.indexOf(origem);
+                jdbcTemplate.update("DELETE FROM " + origem + (destino >= 0 ? " WHERE " + rota + " <> " + destino : ""));
+            }
+            if (jdbcTemplate.update("UPDATE particionamento_votos SET particoes = ? WHERE id = 1", quantidade) == 0) {
+                jdbcTemplate.update("INSERT INTO particionamento_votos (id, particoes) VALUES (1, ?)", quantidade);
+            }
+        });
+        // pauta_votacao continua existindo, vazia, como a tabela da entidade PautaVotacao
+        for (String origem : origens) {
+            if (!tabelas.contains(origem) && !TABELA_UNICA.equals(origem)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + origem);
+            }
+        }
+        log.info("Votos redistribuídos em {} partições", quantidade);
+    }
+
+    //Mesma conta de indice(id_voto) em SQL, para escolher no banco os votos de cada partição
+    static String rota(int quantidade) {
+        return "MOD(MOD(id_voto, " + PautaVotacao.FATOR_PAUTA + ") / 100, " + quantidade + ")";
+    }
+
+    private static List<String> tabelas(int quantidade) {
+        if (quantidade == 1) {
+            return Collections.singletonList(TABELA_UNICA);
+        }
+        List<String> tabelas = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            tabelas.add(TABELA_UNICA + "_p" + i);
+        }
+        return Collections.unmodifiableList(tabelas);
+    }
+}
@@ -1,15 +1,50 @@
 package com.controlevotacao.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.controlevotacao.model.Pauta;
+import com.controlevotacao.model.StatusPauta;
 
 public interface PautaRepository extends JpaRepository<Pauta, String> {
 	
-	Optional<Pauta> findByStatusPauta(String statusPauta);
-	
-	List<Pauta> findAllByStatusPauta(String statusPauta);
+	List<Pauta> findAllByStatusPauta(StatusPauta statusPauta);
+
+	boolean existsByNumPauta(Long numPauta);
+
+	// paginação por cursor (keyset) na ordem de id_pauta: a página seguinte começa depois do último id da anterior,
+	// então o índice (status_pauta, id_pauta) é percorrido só pelo tamanho da página, sem OFFSET nem COUNT.
+	// O ORDER BY repete status_pauta para o H2 reconhecer a ordem do índice e não ordenar todas as pautas da situação.
+	@Query("select p from Pauta p where p.statusPauta = :status order by p.statusPauta, p.idPauta")
+	List<Pauta> buscarPaginaPorStatus(@Param("status") StatusPauta statusPauta, Pageable pagina);
+
+	@Query("select p from Pauta p where p.statusPauta = :status and p.idPauta > :apos order by p.statusPauta, p.idPauta")
+	List<Pauta> buscarPaginaPorStatus(@Param("status") StatusPauta statusPauta, @Param("apos") String apos, Pageable pagina);
+
+	List<Pauta> findAllByOrderByIdPauta(Pageable pagina);
+
+	List<Pauta> findByIdPautaGreaterThanOrderByIdPauta(String idPauta, Pageable pagina);
+
+	// Transições de situação em um único UPDATE condicional: a condição sobre a situação atual faz a verificação
+	// e a escrita juntas no banco, e a quantidade de linhas alteradas (0 ou 1) diz se a transição aconteceu.
+	// "versioned" incrementa a versão da linha, invalidando as cópias da pauta lidas antes da transição.
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("update versioned Pauta p set p.statusPauta = :aberta, p.inicioSessao = :inicio, p.fimSessao = :fim "
+			+ "where p.idPauta = :idPauta and p.statusPauta = :pendente")
+	int abrirSessao(@Param("idPauta") String idPauta, @Param("inicio") LocalDateTime inicio, @Param("fim") LocalDateTime fim,
+			@Param("pendente") StatusPauta pendente, @Param("aberta") StatusPauta aberta);
+
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("update versioned Pauta p set p.statusPauta = :fechada where p.idPauta = :idPauta and p.statusPauta = :aberta")
+	int fecharSessao(@Param("idPauta") String idPauta, @Param("aberta") StatusPauta aberta,
+			@Param("fechada") StatusPauta fechada);
 }
@@ -0,0 +1,8 @@
+package com.controlevotacao.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.controlevotacao.model.PautaResultado;
+
+public interface PautaResultadoRepository extends JpaRepository<PautaResultado, String> {
+}
@@ -1,17 +1,10 @@
 package com.controlevotacao.repository;
 
-import java.util.List;
-import java.util.Optional;
-
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.controlevotacao.model.PautaVotacao;
-import com.controlevotacao.model.PautaVotacaoId;
-
-public interface PautaVotacaoRepository extends JpaRepository<PautaVotacao, PautaVotacaoId> {
-    List<PautaVotacao> findByIdIdPauta(String idPauta);
 
-    Optional<PautaVotacao> findByIdIdPautaAndIdCodCpf(String idPauta, String codCpf);
-    
-    long countByIdIdPautaAndVoto(String idPauta, String voto);
+//Os votos são lidos e gravados pelas operações de PautaVotacaoRepositoryCustom, que conhecem as partições;
+//os métodos herdados do JpaRepository só enxergam a tabela pauta_votacao
+public interface PautaVotacaoRepository extends JpaRepository<PautaVotacao, Long>, PautaVotacaoRepositoryCustom {
 }
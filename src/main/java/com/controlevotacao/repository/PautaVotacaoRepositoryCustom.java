@@ -0,0 +1,44 @@
+package com.controlevotacao.repository;
+
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import com.controlevotacao.model.PautaVotacao;
+
+//Operações sobre pauta_votacao (ou as partições dela, ver ParticoesVotos) feitas direto via JDBC,
+//fora do contexto de persistência do JPA
+public interface PautaVotacaoRepositoryCustom {
+
+    // insere os votos em um único batch JDBC e retorna a quantidade de linhas afetadas por voto
+    int[] inserirLote(List<PautaVotacao> votos);
+
+    // insere os votos em um único batch JDBC mantendo os que já existem, para gravar de novo os mesmos votos sem erro
+    void mesclarLote(List<PautaVotacao> votos);
+
+    // insere um único voto sem consulta prévia; um cpf repetido na pauta gera DuplicateKeyException
+    void inserir(PautaVotacao voto);
+
+    // percorre os cpfs que já votaram na pauta sem montar uma lista em memória
+    void percorrerCpfsPorPauta(long numPauta, LongConsumer consumidor);
+
+    // votos de uma pauta em ordem de chave (cpf), lidos da faixa de chaves dela em cada partição
+    List<PautaVotacao> buscarPorPauta(long numPauta);
+
+    // votos de uma pauta em ordem de chave (cpf), lidos aos poucos das partições; a Stream segura a conexão até ser
+    // fechada e deve ser consumida dentro de uma transação
+    Stream<PautaVotacao> transmitirPorPauta(long numPauta);
+
+    // contagem de uma pauta em uma única consulta agrupada sobre a faixa de chaves dela, indexada pelo código do voto
+    long[] contarVotosPorVoto(long numPauta);
+
+    // menor e maior chave da partição em [inicio, fim), lidas do índice; null se não houver voto na faixa
+    long[] limitesFaixa(int particao, long inicio, long fim);
+
+    // percorre em ordem de chave os votos da partição em [inicio, fim), com o código do voto como está gravado
+    void percorrerFaixa(int particao, long inicio, long fim, ConsumidorVoto consumidor);
+
+    interface ConsumidorVoto {
+        void aceitar(long idVoto, byte codigo);
+    }
+}
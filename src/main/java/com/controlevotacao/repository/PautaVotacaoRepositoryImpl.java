@@ -0,0 +1,282 @@
+package com.controlevotacao.repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+
+//As consultas são montadas uma vez por partição (ParticoesVotos); com uma única partição a tabela é pauta_votacao
+public class PautaVotacaoRepositoryImpl implements PautaVotacaoRepositoryCustom {
+
+    private static final String SQL_INSERIR_VOTO =
+            "INSERT INTO %s (id_voto, voto) VALUES (?, ?)";
+
+    private static final String SQL_MESCLAR_VOTO =
+            "MERGE INTO %s (id_voto, voto) KEY (id_voto) VALUES (?, ?)";
+
+    private static final String SQL_CHAVES_POR_PAUTA =
+            "SELECT id_voto FROM %s WHERE id_voto >= ? AND id_voto < ?";
+
+    private static final String SQL_VOTOS_POR_PAUTA =
+            "SELECT id_voto, voto FROM %s WHERE id_voto >= ? AND id_voto < ?";
+
+    private static final String SQL_CONTAR_POR_VOTO =
+            "SELECT voto, COUNT(*) FROM %s WHERE id_voto >= ? AND id_voto < ? GROUP BY voto";
+
+    private static final String SQL_LIMITES_FAIXA =
+            "SELECT MIN(id_voto), MAX(id_voto) FROM %s WHERE id_voto >= ? AND id_voto < ?";
+
+    private static final String SQL_PERCORRER_FAIXA =
+            "SELECT id_voto, voto FROM %s WHERE id_voto >= ? AND id_voto < ? ORDER BY id_voto";
+
+    // linhas trazidas por vez ao percorrer uma faixa, para não montar o resultado inteiro em memória
+    private static final int TAMANHO_BUSCA = 1000;
+
+    private static final RowMapper<PautaVotacao> MAPEADOR_VOTO = (rs, linha) -> {
+        PautaVotacao voto = new PautaVotacao();
+        voto.setIdVoto(rs.getLong(1));
+        voto.setVoto(TipoVoto.deCodigo(rs.getByte(2)));
+        return voto;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ParticoesVotos particoes;
+    private final String[] sqlInserir;
+    private final String[] sqlMesclar;
+    private final String[] sqlChaves;
+    private final String[] sqlVotos;
+    private final String[] sqlContar;
+    private final String[] sqlLimites;
+    private final String[] sqlPercorrer;
+
+    public PautaVotacaoRepositoryImpl(JdbcTemplate jdbcTemplate, ParticoesVotos particoes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.particoes = particoes;
+        this.sqlInserir = porParticao(SQL_INSERIR_VOTO);
+        this.sqlMesclar = porParticao(SQL_MESCLAR_VOTO);
+        this.sqlChaves = porParticao(SQL_CHAVES_POR_PAUTA);
+        this.sqlVotos = porParticao(SQL_VOTOS_POR_PAUTA);
+        this.sqlContar = porParticao(SQL_CONTAR_POR_VOTO);
+        this.sqlLimites = porParticao(SQL_LIMITES_FAIXA);
+        this.sqlPercorrer = porParticao(SQL_PERCORRER_FAIXA);
+    }
+
+    private String[] porParticao(String modelo) {
+        List<String> tabelas = particoes.getTabelas();
+        String[] consultas = new String[tabelas.size()];
+        for (int i = 0; i < consultas.length; i++) {
+            consultas[i] = String.format(modelo, tabelas.get(i));
+        }
+        return consultas;
+    }
+
+    @Override
+    public int[] inserirLote(List<PautaVotacao> votos) {
+        return gravarLote(sqlInserir, votos);
+    }
+
+    @Override
+    public void mesclarLote(List<PautaVotacao> votos) {
+        gravarLote(sqlMesclar, votos);
+    }
+
+    // um batch por partição, dentro da transação de quem chama; o retorno segue a ordem dos votos recebidos
+    private int[] gravarLote(String[] sql, List<PautaVotacao> votos) {
+        if (particoes.getQuantidade() == 1) {
+            return batch(sql[0], votos);
+        }
+        List<List<Integer>> posicoes = new ArrayList<>(particoes.getQuantidade());
+        for (int i = 0; i < particoes.getQuantidade(); i++) {
+            posicoes.add(new ArrayList<>());
+        }
+        for (int i = 0; i < votos.size(); i++) {
+            posicoes.get(particoes.indice(votos.get(i).getIdVoto())).add(i);
+        }
+        int[] linhas = new int[votos.size()];
+        for (int p = 0; p < posicoes.size(); p++) {
+            List<Integer> daParticao = posicoes.get(p);
+            if (daParticao.isEmpty()) {
+                continue;
+            }
+            List<PautaVotacao> lote = new ArrayList<>(daParticao.size());
+            for (int posicao : daParticao) {
+                lote.add(votos.get(posicao));
+            }
+            int[] afetadas = batch(sql[p], lote);
+            for (int i = 0; i < afetadas.length; i++) {
+                linhas[daParticao.get(i)] = afetadas[i];
+            }
+        }
+        return linhas;
+    }
+
+    private int[] batch(String sql, List<PautaVotacao> votos) {
+        // batchUpdate devolve um array vazio, sem o lote [0], quando não há votos
+        if (votos.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(sql, votos, votos.size(), (ps, voto) -> {
+            ps.setLong(1, voto.getIdVoto());
+            ps.setByte(2, voto.getVoto().getCodigo());
+        })[0];
+    }
+
+    @Override
+    public void inserir(PautaVotacao voto) {
+        jdbcTemplate.update(sqlInserir[particoes.indice(voto.getIdVoto())], voto.getIdVoto(), voto.getVoto().getCodigo());
+    }
+
+    @Override
+    public void percorrerCpfsPorPauta(long numPauta, LongConsumer consumidor) {
+        long inicio = PautaVotacao.inicioFaixa(numPauta);
+        for (String sql : sqlChaves) {
+            jdbcTemplate.query(sql, rs -> {
+                consumidor.accept(rs.getLong(1) - inicio);
+            }, inicio, inicio + PautaVotacao.FATOR_PAUTA);
+        }
+    }
+
+    @Override
+    public List<PautaVotacao> buscarPorPauta(long numPauta) {
+        long inicio = PautaVotacao.inicioFaixa(numPauta);
+        List<List<PautaVotacao>> parciais = particoes.emCadaParticao(p -> jdbcTemplate.query(
+                sqlVotos[p], MAPEADOR_VOTO, inicio, inicio + PautaVotacao.FATOR_PAUTA));
+        if (parciais.size() == 1) {
+            return parciais.get(0);
+        }
+        List<PautaVotacao> votos = new ArrayList<>();
+        for (List<PautaVotacao> parcial : parciais) {
+            votos.addAll(parcial);
+        }
+        // mesma ordem da leitura de uma única tabela: pela chave, ou seja, pelo cpf
+        votos.sort(Comparator.comparing(PautaVotacao::getIdVoto));
+        return votos;
+    }
+
+    @Override
+    public Stream<PautaVotacao> transmitirPorPauta(long numPauta) {
+        long inicio = PautaVotacao.inicioFaixa(numPauta);
+        List<Stream<PautaVotacao>> parciais = new ArrayList<>(sqlPercorrer.length);
+        try {
+            for (String sql : sqlPercorrer) {
+                parciais.add(jdbcTemplate.queryForStream(conexao -> {
+                    PreparedStatement ps = conexao.prepareStatement(sql);
+                    ps.setFetchSize(TAMANHO_BUSCA);
+                    ps.setLong(1, inicio);
+                    ps.setLong(2, inicio + PautaVotacao.FATOR_PAUTA);
+                    return ps;
+                }, MAPEADOR_VOTO));
+            }
+        } catch (RuntimeException e) {
+            parciais.forEach(Stream::close);
+            throw e;
+        }
+        if (parciais.size() == 1) {
+            return parciais.get(0);
+        }
+        // cada partição já vem em ordem de chave: intercala as K leituras em vez de ordenar tudo em memória
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Intercalacao(parciais),
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> parciais.forEach(Stream::close));
+    }
+
+    @Override
+    public long[] contarVotosPorVoto(long numPauta) {
+        long inicio = PautaVotacao.inicioFaixa(numPauta);
+        long[] contagem = new long[TipoVoto.values().length];
+        for (long[] parcial : particoes.emCadaParticao(p -> contar(sqlContar[p], inicio))) {
+            for (int i = 0; i < contagem.length; i++) {
+                contagem[i] += parcial[i];
+            }
+        }
+        return contagem;
+    }
+
+    private long[] contar(String sql, long inicio) {
+        long[] contagem = new long[TipoVoto.values().length];
+        jdbcTemplate.query(sql, rs -> {
+            contagem[TipoVoto.deCodigo(rs.getByte(1)).getCodigo()] = rs.getLong(2);
+        }, inicio, inicio + PautaVotacao.FATOR_PAUTA);
+        return contagem;
+    }
+
+    @Override
+    public long[] limitesFaixa(int particao, long inicio, long fim) {
+        return jdbcTemplate.queryForObject(sqlLimites[particao], (rs, linha) -> {
+            long menor = rs.getLong(1);
+            return rs.wasNull() ? null : new long[] {menor, rs.getLong(2)};
+        }, inicio, fim);
+    }
+
+    @Override
+    public void percorrerFaixa(int particao, long inicio, long fim, ConsumidorVoto consumidor) {
+        jdbcTemplate.query(conexao -> {
+            PreparedStatement ps = conexao.prepareStatement(sqlPercorrer[particao]);
+            ps.setFetchSize(TAMANHO_BUSCA);
+            ps.setLong(1, inicio);
+            ps.setLong(2, fim);
+            return ps;
+        }, rs -> {
+            consumidor.aceitar(rs.getLong(1), rs.getByte(2));
+        });
+    }
+
+    //Intercala leituras já ordenadas por chave, mantendo em memória só o voto atual de cada uma
+    private static class Intercalacao implements Iterator<PautaVotacao> {
+
+        private final PriorityQueue<Leitura> fila;
+
+        Intercalacao(List<Stream<PautaVotacao>> parciais) {
+            this.fila = new PriorityQueue<>(parciais.size(), Comparator.comparingLong(leitura -> leitura.atual.getIdVoto()));
+            for (Stream<PautaVotacao> parcial : parciais) {
+                Iterator<PautaVotacao> votos = parcial.iterator();
+                if (votos.hasNext()) {
+                    fila.add(new Leitura(votos));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !fila.isEmpty();
+        }
+
+        @Override
+        public PautaVotacao next() {
+            Leitura leitura = fila.poll();
+            if (leitura == null) {
+                throw new NoSuchElementException();
+            }
+            PautaVotacao voto = leitura.atual;
+            if (leitura.votos.hasNext()) {
+                leitura.atual = leitura.votos.next();
+                fila.add(leitura);
+            }
+            return voto;
+        }
+    }
+
+    private static class Leitura {
+        private final Iterator<PautaVotacao> votos;
+        private PautaVotacao atual;
+
+        Leitura(Iterator<PautaVotacao> votos) {
+            this.votos = votos;
+            this.atual = votos.next();
+        }
+    }
+}
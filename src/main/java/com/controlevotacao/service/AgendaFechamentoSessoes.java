@@ -0,0 +1,160 @@
+package com.controlevotacao.service;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+//Agenda o fechamento das sessões no fim do prazo de cada uma.
+//Os prazos ficam em uma DelayQueue ordenada pelo fim da sessão e uma thread própria dorme até o mais próximo vencer,
+//então o fechamento sai poucos milissegundos depois do prazo, sem varreduras periódicas no banco e sem ocupar
+//o scheduler das outras tarefas. Essa thread só retira os prazos vencidos: cada fechamento, que pode esperar segundos
+//pelas gravações pendentes da pauta, roda em um pool pequeno de threads, para uma pauta lenta não atrasar as outras. A agenda só existe em memória: é refeita a partir do banco na subida da aplicação.
+//O fechamento que falha (erro no banco, tempo de espera por trava) volta para a fila com espera crescente, de
+//novaTentativaMs até maximoNovaTentativaMs, e só sai dela quando a pauta está fechada ou não existe mais.
+@Component
+public class AgendaFechamentoSessoes {
+
+	private static final Logger log = LoggerFactory.getLogger(AgendaFechamentoSessoes.class);
+
+	private final DelayQueue<Prazo> prazos = new DelayQueue<>();
+	private final Timer atraso;
+	private final long novaTentativaMs;
+	private final long maximoNovaTentativaMs;
+	private final int threads;
+	private Thread executora;
+	private ExecutorService fechamentos;
+	private volatile Predicate<String> fechamento;
+
+	public AgendaFechamentoSessoes(MeterRegistry registry,
+			                       @Value("${votacao.sessao.fechamento.nova-tentativa-ms:1000}") long novaTentativaMs,
+			                       @Value("${votacao.sessao.fechamento.maximo-nova-tentativa-ms:60000}") long maximoNovaTentativaMs,
+			                       @Value("${votacao.sessao.fechamento.threads:4}") int threads) {
+		this.threads = Math.max(1, threads);
+		this.novaTentativaMs = Math.max(1, novaTentativaMs);
+		this.maximoNovaTentativaMs = Math.max(this.novaTentativaMs, maximoNovaTentativaMs);
+		this.atraso = Timer.builder("votacao.sessao.fechamento.atraso")
+				.description("Tempo entre o fim do prazo da sessão e o início do fechamento")
+				.publishPercentileHistogram()
+				.register(registry);
+		Gauge.builder("votacao.sessao.fechamento.agendados", prazos, DelayQueue::size)
+				.description("Sessões aguardando o fechamento agendado")
+				.register(registry);
+	}
+
+	//Inicia a thread que entrega ao pool o fechamento de cada pauta cujo prazo venceu; os prazos já vencidos saem na hora.
+	//fechamento retorna true quando a pauta ficou resolvida (fechada ou inexistente) e false para tentar de novo
+	public synchronized void iniciar(Predicate<String> fechamento) {
+		if (executora != null) {
+			return;
+		}
+		this.fechamento = fechamento;
+		fechamentos = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("fechamento-sessao-"));
+		executora = new Thread(this::executar, "fechamento-sessoes");
+		executora.setDaemon(true);
+		executora.start();
+	}
+
+	@PreDestroy
+	public synchronized void parar() throws InterruptedException {
+		if (executora != null) {
+			executora.interrupt();
+			executora.join(TimeUnit.SECONDS.toMillis(5));
+			executora = null;
+			fechamentos.shutdownNow();
+			fechamentos.awaitTermination(5, TimeUnit.SECONDS);
+			fechamentos = null;
+		}
+	}
+
+	//Agenda o fechamento da pauta para o instante fimSessaoMillis (epoch em milissegundos)
+	public void agendar(String idPauta, long fimSessaoMillis) {
+		prazos.put(new Prazo(idPauta, fimSessaoMillis, 0));
+	}
+
+	//Remove os prazos agendados, usado ao reconstruir a agenda a partir do banco
+	public void limpar() {
+		prazos.clear();
+	}
+
+	private void executar() {
+		ExecutorService pool = fechamentos;
+		while (!Thread.currentThread().isInterrupted()) {
+			Prazo prazo;
+			try {
+				prazo = prazos.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			pool.execute(() -> fechar(prazo));
+		}
+	}
+
+	//Executa o fechamento no pool; se a pauta não ficar resolvida, o prazo volta para a fila
+	private void fechar(Prazo prazo) {
+		if (prazo.tentativa == 0) {
+			atraso.record(Math.max(0, System.currentTimeMillis() - prazo.fimSessaoMillis), TimeUnit.MILLISECONDS);
+		}
+		boolean resolvido;
+		try {
+			resolvido = fechamento.test(prazo.idPauta);
+		} catch (Exception e) {
+			// a pauta volta para a fila e não aceita votos enquanto isso, pelo prazo em memória
+			log.error("Erro ao fechar pauta {} automaticamente: {}", prazo.idPauta, e.getMessage(), e);
+			resolvido = false;
+		}
+		if (!resolvido && !Thread.currentThread().isInterrupted()) {
+			reagendar(prazo);
+		}
+	}
+
+	//Devolve o prazo à fila para uma nova tentativa, com a espera dobrando a cada falha até o máximo
+	private void reagendar(Prazo prazo) {
+		int tentativa = prazo.tentativa + 1;
+		long espera = Math.min(maximoNovaTentativaMs, novaTentativaMs << Math.min(tentativa - 1, 20));
+		log.warn("Nova tentativa de fechar a pauta {} em {} ms (tentativa {})", prazo.idPauta, espera, tentativa + 1);
+		prazos.put(new Prazo(prazo.idPauta, System.currentTimeMillis() + espera, tentativa));
+	}
+
+	//Fim do prazo de uma sessão, ou instante da nova tentativa de fechá-la; a ordem da fila é a desse instante
+	private static final class Prazo implements Delayed {
+		private final String idPauta;
+		private final long fimSessaoMillis;
+		// fechamentos que já falharam
+		private final int tentativa;
+
+		Prazo(String idPauta, long fimSessaoMillis, int tentativa) {
+			this.idPauta = idPauta;
+			this.fimSessaoMillis = fimSessaoMillis;
+			this.tentativa = tentativa;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(fimSessaoMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed outro) {
+			if (outro instanceof Prazo) {
+				return Long.compare(fimSessaoMillis, ((Prazo) outro).fimSessaoMillis);
+			}
+			return Long.compare(getDelay(TimeUnit.MILLISECONDS), outro.getDelay(TimeUnit.MILLISECONDS));
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package com.controlevotacao.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.controlevotacao.model.Pauta;
+import com.controlevotacao.model.PautaResultado;
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.StatusPauta;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.repository.ParticoesVotos;
+import com.controlevotacao.repository.PautaRepository;
+import com.controlevotacao.repository.PautaResultadoRepository;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+import com.controlevotacao.util.CpfCodec;
+
+//Auditoria do resultado de uma pauta fechada: recontagem dos votos gravados, conferida com o resultado gravado no
+//fechamento (pauta_resultado) e, se estiver lá, com o que está no cache do resultado.
+//A faixa de chaves da pauta em cada partição é dividida em blocos de até votosPorBloco votos (estimados), percorridos
+//em ordem de chave e em paralelo em um ForkJoinPool próprio; cada bloco é lido aos poucos, sem montar a lista de votos.
+//Cada bloco em leitura ocupa uma conexão do Hikari, então o pool usa no máximo metade das conexões e deixa o resto para
+//os votos e as consultas que chegam durante a auditoria.
+//Ao percorrer, cada voto é conferido: cpf com dígitos verificadores válidos, código de voto conhecido, voto na partição
+//do cpf e chave maior que a anterior do bloco. Como um cpf só pode estar na sua partição e a chave é única em cada
+//tabela, as duas últimas conferências garantem que nenhum cpf foi contado duas vezes na pauta.
+@Service
+public class AuditoriaService {
+
+	private static final Logger log = LoggerFactory.getLogger(AuditoriaService.class);
+
+	// quantidade de votos irregulares listados no relatório, além das contagens
+	private static final int MAXIMO_EXEMPLOS = 10;
+
+	private final PautaRepository pautaRepository;
+	private final PautaVotacaoRepository pautaVotacaoRepository;
+	private final PautaResultadoRepository pautaResultadoRepository;
+	private final ResultadoPautaService resultadoPautaService;
+	private final ParticoesVotos particoes;
+	private final ForkJoinPool pool;
+	private final long votosPorBloco;
+
+	public AuditoriaService(PautaRepository pautaRepository,
+			                PautaVotacaoRepository pautaVotacaoRepository,
+			                PautaResultadoRepository pautaResultadoRepository,
+			                ResultadoPautaService resultadoPautaService,
+			                ParticoesVotos particoes,
+			                @Value("${votacao.auditoria.paralelismo:0}") int paralelismo,
+			                @Value("${votacao.auditoria.votos-por-bloco:100000}") long votosPorBloco,
+			                @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximoConexoes) {
+		this.pautaRepository = pautaRepository;
+		this.pautaVotacaoRepository = pautaVotacaoRepository;
+		this.pautaResultadoRepository = pautaResultadoRepository;
+		this.resultadoPautaService = resultadoPautaService;
+		this.particoes = particoes;
+		// 0: uma thread por processador; em qualquer caso, no máximo metade das conexões do banco
+		int threads = paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors();
+		this.pool = new ForkJoinPool(Math.max(1, Math.min(threads, maximoConexoes / 2)));
+		this.votosPorBloco = Math.max(1, votosPorBloco);
+	}
+
+	@PreDestroy
+	public void encerrar() {
+		pool.shutdownNow();
+	}
+
+	//Reconta os votos da pauta e monta o relatório da auditoria; em caso de erro, o mapa traz a chave "erro"
+	public Map<String, Object> auditar(String idPauta) {
+		Map<String, Object> resposta = new LinkedHashMap<>();
+		try {
+			Optional<Pauta> pautaOpt = pautaRepository.findById(idPauta);
+			if (!pautaOpt.isPresent()) {
+				resposta.put("erro", "NAO_ENCONTRADA");
+				return resposta;
+			}
+			Pauta pauta = pautaOpt.get();
+			if (pauta.getStatusPauta() != StatusPauta.FECHADA) {
+				resposta.put("erro", "NAO_FECHADA");
+				return resposta;
+			}
+
+			long inicio = System.nanoTime();
+			Optional<PautaResultado> gravado = pautaResultadoRepository.findById(idPauta);
+			Optional<PautaResultado> emCache = resultadoPautaService.obterEmCache(idPauta);
+			long estimativa = gravado.map(r -> r.getVotosSim() + r.getVotosNao()).orElse(0L);
+			Recontagem recontagem = pool.invoke(new RecontagemPauta(pauta.getNumPauta(), estimativa));
+			long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+			// as tarefas terminam fora de ordem; o relatório lista os blocos por partição e faixa
+			recontagem.blocos.sort(Comparator.comparing((Map<String, Object> bloco) -> (Integer) bloco.get("particao"))
+					.thenComparing(bloco -> (String) bloco.get("cpfInicial")));
+
+			long sim = recontagem.contagem[TipoVoto.SIM.getCodigo()];
+			long nao = recontagem.contagem[TipoVoto.NAO.getCodigo()];
+			boolean integro = recontagem.cpfsInvalidos == 0 && recontagem.votosInvalidos == 0
+					&& recontagem.foraDaParticao == 0 && recontagem.chavesFora == 0;
+			boolean confere = integro && gravado.isPresent() && confere(gravado.get(), sim, nao)
+					&& (!emCache.isPresent() || confere(emCache.get(), sim, nao));
+
+			resposta.put("idPauta", idPauta);
+			resposta.put("confere", confere);
+			resposta.put("Sim", sim);
+			resposta.put("Não", nao);
+			resposta.put("resultadoGravado", gravado.map(AuditoriaService::placar).orElse(null));
+			resposta.put("resultadoEmCache", emCache.map(AuditoriaService::placar).orElse(null));
+			resposta.put("cpfsInvalidos", recontagem.cpfsInvalidos);
+			resposta.put("votosInvalidos", recontagem.votosInvalidos);
+			resposta.put("votosForaDaParticao", recontagem.foraDaParticao);
+			resposta.put("chavesForaDeOrdem", recontagem.chavesFora);
+			resposta.put("exemplosIrregulares", recontagem.exemplos);
+			resposta.put("particoes", particoes.getQuantidade());
+			resposta.put("duracaoMs", duracaoMs);
+			resposta.put("blocos", recontagem.blocos);
+			log.info("Auditoria da pauta {}: {} votos em {} blocos, {} ms, confere={}",
+					idPauta, sim + nao, recontagem.blocos.size(), duracaoMs, confere);
+			return resposta;
+		} catch (Exception e) {
+			log.error("Erro ao auditar a pauta {}: {}", idPauta, e.getMessage(), e);
+			resposta.clear();
+			resposta.put("erro", "ERRO");
+			return resposta;
+		}
+	}
+
+	private static boolean confere(PautaResultado resultado, long sim, long nao) {
+		return resultado.getVotosSim() == sim && resultado.getVotosNao() == nao;
+	}
+
+	private static Map<String, Object> placar(PautaResultado resultado) {
+		Map<String, Object> placar = new LinkedHashMap<>();
+		placar.put("Sim", resultado.getVotosSim());
+		placar.put("Não", resultado.getVotosNao());
+		return placar;
+	}
+
+	//Divide a pauta em uma tarefa por partição, cada uma com a quantidade de blocos pela estimativa de votos nela
+	private class RecontagemPauta extends RecursiveTask<Recontagem> {
+
+		private final long numPauta;
+		private final long estimativa;
+
+		RecontagemPauta(long numPauta, long estimativa) {
+			this.numPauta = numPauta;
+			this.estimativa = estimativa;
+		}
+
+		@Override
+		protected Recontagem compute() {
+			long inicioFaixa = PautaVotacao.inicioFaixa(numPauta);
+			long fimFaixa = PautaVotacao.inicioFaixa(numPauta + 1);
+			// blocos por partição: pelo tamanho estimado, mas ao menos um por thread do pool entre todas as partições
+			long porParticao = estimativa / particoes.getQuantidade();
+			int blocos = (int) Math.max((porParticao + votosPorBloco - 1) / votosPorBloco,
+					(pool.getParallelism() + particoes.getQuantidade() - 1) / particoes.getQuantidade());
+			List<RecontagemFaixa> tarefas = new ArrayList<>();
+			for (int particao = 0; particao < particoes.getQuantidade(); particao++) {
+				long[] limites = pautaVotacaoRepository.limitesFaixa(particao, inicioFaixa, fimFaixa);
+				if (limites != null) {
+					tarefas.add(new RecontagemFaixa(particao, inicioFaixa, limites[0], limites[1] + 1, Math.max(1, blocos)));
+				}
+			}
+			Recontagem total = new Recontagem();
+			for (RecontagemFaixa tarefa : invokeAll(tarefas)) {
+				total.somar(tarefa.join());
+			}
+			return total;
+		}
+	}
+
+	//Reconta a faixa [inicio, fim) de uma partição, dividindo-a ao meio até sobrar um bloco
+	private class RecontagemFaixa extends RecursiveTask<Recontagem> {
+
+		private final int particao;
+		private final long inicioFaixa;
+		private final long inicio;
+		private final long fim;
+		private final int blocos;
+
+		RecontagemFaixa(int particao, long inicioFaixa, long inicio, long fim, int blocos) {
+			this.particao = particao;
+			this.inicioFaixa = inicioFaixa;
+			this.inicio = inicio;
+			this.fim = fim;
+			this.blocos = blocos;
+		}
+
+		@Override
+		protected Recontagem compute() {
+			if (blocos > 1 && fim - inicio >= blocos) {
+				int blocosInicio = blocos / 2;
+				long meio = inicio + (fim - inicio) / blocos * blocosInicio;
+				RecontagemFaixa primeira = new RecontagemFaixa(particao, inicioFaixa, inicio, meio, blocosInicio);
+				RecontagemFaixa segunda = new RecontagemFaixa(particao, inicioFaixa, meio, fim, blocos - blocosInicio);
+				primeira.fork();
+				Recontagem resultado = segunda.compute();
+				resultado.somar(primeira.join());
+				return resultado;
+			}
+			return percorrer();
+		}
+
+		private Recontagem percorrer() {
+			long comeco = System.nanoTime();
+			Recontagem recontagem = new Recontagem();
+			long[] anterior = {Long.MIN_VALUE};
+			pautaVotacaoRepository.percorrerFaixa(particao, inicio, fim, (idVoto, codigo) -> {
+				long cpf = idVoto - inicioFaixa;
+				if (!CpfCodec.valido(cpf)) {
+					recontagem.irregular(idVoto, "cpf inválido");
+					recontagem.cpfsInvalidos++;
+				}
+				if (codigo != TipoVoto.SIM.getCodigo() && codigo != TipoVoto.NAO.getCodigo()) {
+					recontagem.irregular(idVoto, "código de voto " + codigo);
+					recontagem.votosInvalidos++;
+				} else {
+					recontagem.contagem[codigo]++;
+				}
+				if (particoes.indice(idVoto) != particao) {
+					recontagem.irregular(idVoto, "fora da partição " + particao);
+					recontagem.foraDaParticao++;
+				}
+				if (idVoto <= anterior[0]) {
+					recontagem.irregular(idVoto, "chave repetida ou fora de ordem");
+					recontagem.chavesFora++;
+				}
+				anterior[0] = idVoto;
+			});
+			Map<String, Object> bloco = new LinkedHashMap<>();
+			bloco.put("particao", particao);
+			bloco.put("cpfInicial", CpfCodec.paraString(inicio - inicioFaixa));
+			bloco.put("cpfFinal", CpfCodec.paraString(fim - 1 - inicioFaixa));
+			bloco.put("votos", recontagem.contagem[0] + recontagem.contagem[1] + recontagem.votosInvalidos);
+			bloco.put("duracaoMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - comeco));
+			recontagem.blocos.add(bloco);
+			return recontagem;
+		}
+	}
+
+	//Contagens de uma ou mais faixas, somadas à medida que as tarefas terminam
+	private static class Recontagem {
+		private final long[] contagem = new long[TipoVoto.values().length];
+		private long cpfsInvalidos;
+		private long votosInvalidos;
+		private long foraDaParticao;
+		private long chavesFora;
+		private final List<String> exemplos = new ArrayList<>();
+		private final List<Map<String, Object>> blocos = new ArrayList<>();
+
+		private void irregular(long idVoto, String motivo) {
+			if (exemplos.size() < MAXIMO_EXEMPLOS) {
+				exemplos.add(idVoto + ": " + motivo);
+			}
+		}
+
+		private void somar(Recontagem outra) {
+			for (int i = 0; i < contagem.length; i++) {
+				contagem[i] += outra.contagem[i];
+			}
+			cpfsInvalidos += outra.cpfsInvalidos;
+			votosInvalidos += outra.votosInvalidos;
+			foraDaParticao += outra.foraDaParticao;
+			chavesFora += outra.chavesFora;
+			for (String exemplo : outra.exemplos) {
+				if (exemplos.size() < MAXIMO_EXEMPLOS) {
+					exemplos.add(exemplo);
+				}
+			}
+			blocos.addAll(outra.blocos);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.controlevotacao.service;
+
+import java.util.Arrays;
+
+//Conjunto de CPFs (como long) que já votaram em uma sessão, usado para rejeitar votos duplicados sem ir ao banco.
+//Cada segmento é uma tabela de endereçamento aberto com sondagem linear sobre long[], sem objetos por CPF;
+//os segmentos têm trava própria para que votos de CPFs diferentes raramente disputem a mesma trava.
+public class ConjuntoCpf {
+
+	private static final int SEGMENTOS = 16;
+	private static final long VAZIO = -1L;
+
+	private final Segmento[] segmentos = new Segmento[SEGMENTOS];
+
+	public ConjuntoCpf() {
+		for (int i = 0; i < SEGMENTOS; i++) {
+			segmentos[i] = new Segmento();
+		}
+	}
+
+	//Adiciona o CPF e retorna false se ele já estava no conjunto
+	public boolean adicionar(long cpf) {
+		int hash = espalhar(cpf);
+		return segmento(hash).adicionar(cpf, hash);
+	}
+
+	public boolean contem(long cpf) {
+		int hash = espalhar(cpf);
+		return segmento(hash).contem(cpf, hash);
+	}
+
+	//Remove o CPF, usado quando a gravação do voto falha e o eleitor precisa poder tentar de novo
+	public void remover(long cpf) {
+		int hash = espalhar(cpf);
+		segmento(hash).remover(cpf, hash);
+	}
+
+	public int tamanho() {
+		int total = 0;
+		for (Segmento s : segmentos) {
+			total += s.tamanho();
+		}
+		return total;
+	}
+
+	private Segmento segmento(int hash) {
+		// os bits altos escolhem o segmento e os baixos a posição dentro dele
+		return segmentos[hash >>> 28];
+	}
+
+	//Finalizador do MurmurHash3 para espalhar CPFs sequenciais pela tabela
+	private static int espalhar(long cpf) {
+		long h = cpf;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	private static final class Segmento {
+		private long[] tabela = novaTabela(64);
+		private int tamanho;
+
+		synchronized boolean adicionar(long cpf, int hash) {
+			int mascara = tabela.length - 1;
+			int i = hash & mascara;
+			while (tabela[i] != VAZIO) {
+				if (tabela[i] == cpf) {
+					return false;
+				}
+				i = (i + 1) & mascara;
+			}
+			tabela[i] = cpf;
+			// mantém a ocupação em no máximo 50% para as sondagens continuarem curtas
+			if (++tamanho * 2 > tabela.length) {
+				redimensionar();
+			}
+			return true;
+		}
+
+		synchronized boolean contem(long cpf, int hash) {
+			return posicao(cpf, hash) >= 0;
+		}
+
+		synchronized void remover(long cpf, int hash) {
+			int i = posicao(cpf, hash);
+			if (i < 0) {
+				return;
+			}
+			// remoção com deslocamento para trás, mantendo as cadeias de sondagem sem lápides
+			int mascara = tabela.length - 1;
+			int vago = i;
+			int j = (i + 1) & mascara;
+			while (tabela[j] != VAZIO) {
+				int ideal = espalhar(tabela[j]) & mascara;
+				if (((j - ideal) & mascara) >= ((j - vago) & mascara)) {
+					tabela[vago] = tabela[j];
+					vago = j;
+				}
+				j = (j + 1) & mascara;
+			}
+			tabela[vago] = VAZIO;
+			tamanho--;
+		}
+
+		synchronized int tamanho() {
+			return tamanho;
+		}
+
+		private int posicao(long cpf, int hash) {
+			int mascara = tabela.length - 1;
+			int i = hash & mascara;
+			while (tabela[i] != VAZIO) {
+				if (tabela[i] == cpf) {
+					return i;
+				}
+				i = (i + 1) & mascara;
+			}
+			return -1;
+		}
+
+		private void redimensionar() {
+			long[] antiga = tabela;
+			tabela = novaTabela(antiga.length * 2);
+			int mascara = tabela.length - 1;
+			for (long cpf : antiga) {
+				if (cpf != VAZIO) {
+					int i = espalhar(cpf) & mascara;
+					while (tabela[i] != VAZIO) {
+						i = (i + 1) & mascara;
+					}
+					tabela[i] = cpf;
+				}
+			}
+		}
+
+		private static long[] novaTabela(int capacidade) {
+			long[] tabela = new long[capacidade];
+			Arrays.fill(tabela, VAZIO);
+			return tabela;
+		}
+	}
+}
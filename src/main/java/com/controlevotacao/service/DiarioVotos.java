@@ -0,0 +1,192 @@
+package com.controlevotacao.service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+
+//Diário (journal) dos votos: arquivo só de acréscimo dividido em segmentos de tamanho fixo mapeados em memória.
+//Cada voto é um registro de 16 bytes: id_voto (8), código do voto (1), marcador de registro gravado (1),
+//2 bytes livres e o CRC32 dos 12 bytes anteriores (4). O segmento é criado com zeros, então a leitura para no primeiro
+//registro sem marcador, e um registro incompleto por queda do sistema operacional é reconhecido pelo CRC.
+//Os registros são numerados em sequência a partir de zero; o registro n fica no segmento primeiroSegmento + n / registrosPorSegmento.
+class DiarioVotos {
+
+	static final int TAMANHO_REGISTRO = 16;
+	private static final byte MARCADOR = 1;
+	private static final String PREFIXO = "segmento-";
+	private static final String SUFIXO = ".diario";
+
+	private final Path diretorio;
+	private final int tamanhoSegmento;
+	private final long registrosPorSegmento;
+	private final long primeiroSegmento;
+	private final ConcurrentMap<Long, MappedByteBuffer> segmentos = new ConcurrentHashMap<>();
+	private final CRC32 crc = new CRC32();
+	private final byte[] conteudo = new byte[12];
+	private final ByteBuffer conteudoBuffer = ByteBuffer.wrap(conteudo);
+
+	// próximo número de registro; publicado depois que o registro está no segmento
+	private volatile long escritos;
+	// registros anteriores a este já tiveram o segmento apagado
+	private long descartados;
+
+	DiarioVotos(Path diretorio, long primeiroSegmento, int tamanhoSegmento) {
+		this.diretorio = diretorio;
+		this.primeiroSegmento = primeiroSegmento;
+		this.tamanhoSegmento = tamanhoSegmento - tamanhoSegmento % TAMANHO_REGISTRO;
+		this.registrosPorSegmento = this.tamanhoSegmento / TAMANHO_REGISTRO;
+	}
+
+	//Acrescenta o voto ao segmento atual, criando o seguinte quando ele enche, e retorna o número do registro
+	synchronized long anexar(PautaVotacao voto) throws IOException {
+		long numero = escritos;
+		MappedByteBuffer segmento = segmentos.get(indiceSegmento(numero));
+		if (segmento == null) {
+			segmento = mapear(indiceSegmento(numero));
+		}
+		int posicao = (int) (numero % registrosPorSegmento) * TAMANHO_REGISTRO;
+		conteudoBuffer.putLong(0, voto.getIdVoto());
+		conteudoBuffer.put(8, voto.getVoto().getCodigo());
+		conteudoBuffer.put(9, MARCADOR);
+		crc.reset();
+		crc.update(conteudo, 0, conteudo.length);
+		segmento.putLong(posicao, voto.getIdVoto());
+		segmento.put(posicao + 8, voto.getVoto().getCodigo());
+		segmento.put(posicao + 9, MARCADOR);
+		segmento.putInt(posicao + 12, (int) crc.getValue());
+		escritos = numero + 1;
+		return numero;
+	}
+
+	//Quantidade de registros acrescentados
+	long getEscritos() {
+		return escritos;
+	}
+
+	//Grava em disco os registros de desde até ate (exclusivo)
+	void forcar(long desde, long ate) {
+		if (ate <= desde) {
+			return;
+		}
+		for (long indice = indiceSegmento(desde); indice <= indiceSegmento(ate - 1); indice++) {
+			MappedByteBuffer segmento = segmentos.get(indice);
+			if (segmento != null) {
+				segmento.force();
+			}
+		}
+	}
+
+	//Lê até max registros a partir de desde, sem passar de ate nem do fim do segmento
+	List<PautaVotacao> ler(long desde, long ate, int max) {
+		List<PautaVotacao> votos = new ArrayList<>();
+		MappedByteBuffer segmento = segmentos.get(indiceSegmento(desde));
+		if (segmento == null) {
+			return votos;
+		}
+		long fimSegmento = (indiceSegmento(desde) - primeiroSegmento + 1) * registrosPorSegmento;
+		long fim = Math.min(Math.min(ate, desde + max), fimSegmento);
+		for (long numero = desde; numero < fim; numero++) {
+			int posicao = (int) (numero % registrosPorSegmento) * TAMANHO_REGISTRO;
+			votos.add(registro(segmento.getLong(posicao), segmento.get(posicao + 8)));
+		}
+		return votos;
+	}
+
+	//Apaga os segmentos cujos registros estão todos antes de ate, menos o segmento em uso
+	synchronized void descartarAte(long ate) throws IOException {
+		long atual = indiceSegmento(escritos);
+		for (long indice = indiceSegmento(descartados); indice < Math.min(indiceSegmento(ate), atual); indice++) {
+			segmentos.remove(indice);
+			Files.deleteIfExists(arquivo(diretorio, indice));
+			descartados = (indice - primeiroSegmento + 1) * registrosPorSegmento;
+		}
+	}
+
+	//Apaga todos os segmentos, depois que todos os registros chegaram ao banco e o diário foi encerrado
+	synchronized void descartarTodos() throws IOException {
+		for (Long indice : segmentos.keySet()) {
+			segmentos.remove(indice);
+			Files.deleteIfExists(arquivo(diretorio, indice));
+		}
+		descartados = escritos;
+	}
+
+	private long indiceSegmento(long numero) {
+		return primeiroSegmento + numero / registrosPorSegmento;
+	}
+
+	private MappedByteBuffer mapear(long indice) throws IOException {
+		try (RandomAccessFile arquivo = new RandomAccessFile(arquivo(diretorio, indice).toFile(), "rw")) {
+			arquivo.setLength(tamanhoSegmento);
+			// o mapeamento continua válido depois que o arquivo é fechado
+			MappedByteBuffer segmento = arquivo.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, tamanhoSegmento);
+			segmentos.put(indice, segmento);
+			return segmento;
+		}
+	}
+
+	//Segmentos que ficaram no diretório, em ordem, ou seja, com registros que podem não ter chegado ao banco
+	static List<Path> listarSegmentos(Path diretorio) throws IOException {
+		List<Path> arquivos = new ArrayList<>();
+		try (DirectoryStream<Path> lista = Files.newDirectoryStream(diretorio, PREFIXO + "*" + SUFIXO)) {
+			for (Path arquivo : lista) {
+				arquivos.add(arquivo);
+			}
+		}
+		arquivos.sort(null);
+		return arquivos;
+	}
+
+	static long indice(Path segmento) {
+		String nome = segmento.getFileName().toString();
+		return Long.parseLong(nome.substring(PREFIXO.length(), nome.length() - SUFIXO.length()));
+	}
+
+	//Percorre os registros válidos de um segmento; retorna false se parou em um registro corrompido
+	static boolean percorrer(Path segmento, Consumer<PautaVotacao> consumidor) throws IOException {
+		try (FileChannel canal = FileChannel.open(segmento)) {
+			MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+			byte[] conteudo = new byte[12];
+			CRC32 crc = new CRC32();
+			for (int posicao = 0; posicao + TAMANHO_REGISTRO <= buffer.limit(); posicao += TAMANHO_REGISTRO) {
+				if (buffer.get(posicao + 9) != MARCADOR) {
+					return true;
+				}
+				buffer.position(posicao);
+				buffer.get(conteudo);
+				crc.reset();
+				crc.update(conteudo, 0, conteudo.length);
+				if ((int) crc.getValue() != buffer.getInt(posicao + 12)) {
+					return false;
+				}
+				consumidor.accept(registro(buffer.getLong(posicao), buffer.get(posicao + 8)));
+			}
+			return true;
+		}
+	}
+
+	private static PautaVotacao registro(long idVoto, byte codigo) {
+		PautaVotacao voto = new PautaVotacao();
+		voto.setIdVoto(idVoto);
+		voto.setVoto(TipoVoto.deCodigo(codigo));
+		return voto;
+	}
+
+	private static Path arquivo(Path diretorio, long indice) {
+		return diretorio.resolve(String.format("%s%012d%s", PREFIXO, indice, SUFIXO));
+	}
+}
@@ -0,0 +1,331 @@
+package com.controlevotacao.service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.controlevotacao.model.PautaResultado;
+import com.controlevotacao.model.StatusPauta;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+//Difunde por Server-Sent Events o placar das pautas com sessão aberta para os assinantes.
+//Uma única tarefa periódica lê os contadores em memória e, para cada pauta cujo placar mudou, serializa o placar uma vez
+//e o coloca na fila dos assinantes daquela pauta (ou de todas), então a quantidade de eventos por segundo não depende da
+//quantidade de votos nem há consulta por assinante. A escrita na conexão, que bloqueia enquanto o cliente não lê, fica
+//com um pool próprio (uma tarefa por assinante com eventos na fila), e a tarefa periódica nunca espera por um cliente;
+//o assinante cuja fila passa de filaMaxima eventos é desconectado e pode se reconectar.
+//Quando uma sessão é fechada sai um evento "encerrada" com o resultado gravado em pauta_resultado no fechamento
+//(PautaAlteradaEvent FECHADA), depois de os votos aceitos terem sido gravados e apurados;
+//a conexão continua aberta e recebe o placar das próximas sessões que forem abertas.
+@Component
+public class DifusorPlacar {
+
+	private static final String EVENTO_PLACAR = "placar";
+	private static final String EVENTO_ENCERRADA = "encerrada";
+	private static final long RECONEXAO_MS = TimeUnit.SECONDS.toMillis(5);
+
+	private static final Logger log = LoggerFactory.getLogger(DifusorPlacar.class);
+
+	private final RegistroSessao registroSessao;
+	private final PlacarVotos placarVotos;
+	private final ResultadoPautaService resultadoPautaService;
+	private final TaskScheduler scheduler;
+	private final ObjectMapper objectMapper;
+	private final long intervaloMs;
+	private final long timeoutMs;
+	private final long ticksPorHeartbeat;
+	private final int filaMaxima;
+	private final ExecutorService envios;
+	private final Counter descartados;
+	private final Set<Assinante> assinantes = ConcurrentHashMap.newKeySet();
+	private ScheduledFuture<?> tarefa;
+
+	// último placar enviado de cada pauta; a tarefa periódica e o evento de fechamento sincronizam em this
+	private final Map<String, long[]> difundidos = new HashMap<>();
+	private long ticksSemHeartbeat;
+
+	public DifusorPlacar(RegistroSessao registroSessao,
+			             PlacarVotos placarVotos,
+			             ResultadoPautaService resultadoPautaService,
+			             TaskScheduler scheduler,
+			             ObjectMapper objectMapper,
+			             MeterRegistry registry,
+			             @Value("${votacao.placar.stream.intervalo-ms:500}") long intervaloMs,
+			             @Value("${votacao.placar.stream.timeout-ms:1800000}") long timeoutMs,
+			             @Value("${votacao.placar.stream.heartbeat-ms:15000}") long heartbeatMs,
+			             @Value("${votacao.placar.stream.threads-envio:4}") int threadsEnvio,
+			             @Value("${votacao.placar.stream.fila-maxima:64}") int filaMaxima) {
+		this.registroSessao = registroSessao;
+		this.placarVotos = placarVotos;
+		this.resultadoPautaService = resultadoPautaService;
+		this.scheduler = scheduler;
+		this.objectMapper = objectMapper;
+		this.intervaloMs = intervaloMs;
+		this.timeoutMs = timeoutMs;
+		this.ticksPorHeartbeat = Math.max(1, heartbeatMs / intervaloMs);
+		this.filaMaxima = filaMaxima;
+		this.envios = Executors.newFixedThreadPool(threadsEnvio, new CustomizableThreadFactory("placar-envio-"));
+		Gauge.builder("votacao.placar.assinantes", assinantes, Set::size)
+				.description("Conexões SSE recebendo o placar das sessões abertas")
+				.register(registry);
+		this.descartados = Counter.builder("votacao.placar.assinantes.descartados")
+				.description("Conexões SSE encerradas por não acompanharem o ritmo dos eventos")
+				.register(registry);
+	}
+
+	@PostConstruct
+	public void iniciar() {
+		tarefa = scheduler.scheduleAtFixedRate(this::difundir, intervaloMs);
+	}
+
+	//Encerra as conexões abertas para não segurar o desligamento do servidor
+	@PreDestroy
+	public void parar() {
+		if (tarefa != null) {
+			tarefa.cancel(false);
+		}
+		envios.shutdownNow();
+		for (Assinante assinante : assinantes) {
+			assinante.emitter.complete();
+		}
+		assinantes.clear();
+	}
+
+	//Registra um novo assinante do placar da pauta informada (ou de todas, com idPauta null)
+	//e já coloca na fila dele o placar atual das sessões abertas que acompanha. A inclusão e a leitura do placar atual
+	//são feitas com a mesma trava da difusão: o que for difundido depois chega a ele, e sempre depois do placar inicial
+	public SseEmitter assinar(String idPauta) {
+		SseEmitter emitter = new SseEmitter(timeoutMs);
+		Assinante assinante = new Assinante(emitter, idPauta);
+		emitter.onCompletion(() -> assinantes.remove(assinante));
+		emitter.onTimeout(() -> assinantes.remove(assinante));
+		emitter.onError(erro -> assinantes.remove(assinante));
+
+		synchronized (this) {
+			assinantes.add(assinante);
+			try {
+				for (SessaoAberta sessao : registroSessao.listarAtivas()) {
+					if (assinante.acompanha(sessao.getIdPauta())) {
+						PlacarVotos.Placar placar = placarVotos.obter(sessao.getIdPauta());
+						enfileirar(assinante, evento(EVENTO_PLACAR, sessao.getIdPauta(), placar.getSim(), placar.getNao()));
+					}
+				}
+			} catch (JsonProcessingException e) {
+				assinantes.remove(assinante);
+				emitter.completeWithError(e);
+			}
+		}
+		return emitter;
+	}
+
+	//Executada a cada intervalo: envia o placar das pautas que mudaram
+	synchronized void difundir() {
+		try {
+			Map<String, SessaoAberta> ativas = new HashMap<>();
+			for (SessaoAberta sessao : registroSessao.listarAtivas()) {
+				ativas.put(sessao.getIdPauta(), sessao);
+			}
+			// o evento final sai no fechamento (encerrar); aqui só sai do acompanhamento a pauta que não está mais aberta
+			difundidos.keySet().retainAll(ativas.keySet());
+
+			for (String idPauta : ativas.keySet()) {
+				PlacarVotos.Placar placar = placarVotos.obter(idPauta);
+				long sim = placar.getSim();
+				long nao = placar.getNao();
+				long[] anterior = difundidos.get(idPauta);
+				if (anterior == null || sim != anterior[0] || nao != anterior[1]) {
+					difundidos.put(idPauta, new long[] { sim, nao });
+					enviar(idPauta, evento(EVENTO_PLACAR, idPauta, sim, nao));
+				}
+			}
+
+			// comentário periódico para descobrir conexões que caíram enquanto o placar não mudava
+			if (++ticksSemHeartbeat >= ticksPorHeartbeat) {
+				ticksSemHeartbeat = 0;
+				enviar(null, EventoPronto.comentario("heartbeat"));
+			}
+		} catch (Exception e) {
+			// a tarefa periódica não pode morrer por um erro eventual
+			log.error("Erro ao difundir o placar: {}", e.getMessage(), e);
+		}
+	}
+
+	//Envia o resultado gravado da pauta fechada (nesta ou em outra instância) como evento final da sessão
+	@EventListener
+	public synchronized void encerrar(PautaAlteradaEvent evento) {
+		if (evento.getStatusPauta() != StatusPauta.FECHADA) {
+			return;
+		}
+		difundidos.remove(evento.getIdPauta());
+		try {
+			Optional<PautaResultado> resultado = resultadoPautaService.obter(evento.getIdPauta());
+			if (!resultado.isPresent()) {
+				log.warn("Pauta {} fechada sem resultado gravado; evento final não enviado", evento.getIdPauta());
+				return;
+			}
+			enviar(evento.getIdPauta(), evento(EVENTO_ENCERRADA, evento.getIdPauta(),
+					resultado.get().getVotosSim(), resultado.get().getVotosNao()));
+		} catch (Exception e) {
+			log.error("Erro ao difundir o encerramento da pauta {}: {}", evento.getIdPauta(), e.getMessage(), e);
+		}
+	}
+
+	//Coloca o evento na fila dos assinantes da pauta informada (com idPauta null, de todos), sem esperar o envio
+	private void enviar(String idPauta, EventoPronto evento) {
+		for (Assinante assinante : assinantes) {
+			if (idPauta == null || assinante.acompanha(idPauta)) {
+				enfileirar(assinante, evento);
+			}
+		}
+	}
+
+	private void enfileirar(Assinante assinante, EventoPronto evento) {
+		if (assinante.pendentes.incrementAndGet() > filaMaxima) {
+			descartar(assinante);
+			return;
+		}
+		assinante.fila.add(evento);
+		agendarEnvio(assinante);
+	}
+
+	//Tira da difusão o assinante que não acompanha os eventos; a conexão é encerrada pela tarefa de envio dele,
+	//depois da escrita em andamento, para não bloquear quem descarta
+	private void descartar(Assinante assinante) {
+		if (assinantes.remove(assinante)) {
+			assinante.descartado = true;
+			descartados.increment();
+			log.debug("Assinante do placar descartado com {} eventos pendentes", assinante.pendentes.get());
+			agendarEnvio(assinante);
+		}
+	}
+
+	private void agendarEnvio(Assinante assinante) {
+		if (assinante.emEnvio.compareAndSet(false, true)) {
+			try {
+				envios.execute(() -> esvaziar(assinante));
+			} catch (RejectedExecutionException e) {
+				// desligando: as conexões são encerradas em parar()
+				assinante.emEnvio.set(false);
+			}
+		}
+	}
+
+	//Escreve os eventos da fila do assinante na conexão, na ordem em que entraram
+	private void esvaziar(Assinante assinante) {
+		do {
+			EventoPronto evento;
+			while (!assinante.descartado && (evento = assinante.fila.poll()) != null) {
+				assinante.pendentes.decrementAndGet();
+				try {
+					assinante.emitter.send(evento.paraEnvio());
+				} catch (IOException | IllegalStateException e) {
+					// cliente desconectado: a conexão é descartada e ele se reconecta se quiser
+					assinantes.remove(assinante);
+					assinante.descartado = true;
+					assinante.fila.clear();
+					assinante.emitter.completeWithError(e);
+					return;
+				}
+			}
+			if (assinante.descartado) {
+				assinante.fila.clear();
+				assinante.emitter.complete();
+				return;
+			}
+			assinante.emEnvio.set(false);
+			// um evento pode ter entrado entre o último poll e a liberação: quem o colocou pode ter visto emEnvio ainda true
+		} while (!assinante.fila.isEmpty() && assinante.emEnvio.compareAndSet(false, true));
+	}
+
+	//Monta o evento com o placar já serializado, uma única vez para todos os assinantes
+	private EventoPronto evento(String nome, String idPauta, long sim, long nao) throws JsonProcessingException {
+		Map<String, String> dados = new LinkedHashMap<>();
+		dados.put("idPauta", idPauta);
+		dados.put("Sim", String.valueOf(sim));
+		dados.put("Não", String.valueOf(nao));
+		return EventoPronto.evento(nome, objectMapper.writeValueAsString(dados));
+	}
+
+	//Conexão SSE, a pauta que ela acompanha (null para todas) e os eventos ainda não escritos nela
+	private static final class Assinante {
+		private final SseEmitter emitter;
+		private final String idPauta;
+		private final Queue<EventoPronto> fila = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger pendentes = new AtomicInteger();
+		// há uma tarefa de envio em andamento ou agendada para o assinante
+		private final AtomicBoolean emEnvio = new AtomicBoolean();
+		private volatile boolean descartado;
+
+		Assinante(SseEmitter emitter, String idPauta) {
+			this.emitter = emitter;
+			this.idPauta = idPauta;
+		}
+
+		boolean acompanha(String pauta) {
+			return idPauta == null || idPauta.equals(pauta);
+		}
+	}
+
+	//Evento montado uma vez para todos os assinantes: nome e placar já serializado, ou só um comentário.
+	//O SseEventBuilder do Spring acrescenta o terminador a cada build(), então cada envio monta um builder novo
+	//a partir destes campos, sem serializar o placar de novo
+	private static final class EventoPronto {
+		private final String nome;
+		private final String dados;
+		private final String comentario;
+
+		private EventoPronto(String nome, String dados, String comentario) {
+			this.nome = nome;
+			this.dados = dados;
+			this.comentario = comentario;
+		}
+
+		static EventoPronto evento(String nome, String dados) {
+			return new EventoPronto(nome, dados, null);
+		}
+
+		static EventoPronto comentario(String comentario) {
+			return new EventoPronto(null, null, comentario);
+		}
+
+		SseEmitter.SseEventBuilder paraEnvio() {
+			if (comentario != null) {
+				return SseEmitter.event().comment(comentario);
+			}
+			return SseEmitter.event()
+					.name(nome)
+					.reconnectTime(RECONEXAO_MS)
+					.data(dados);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.controlevotacao.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.controlevotacao.model.Pauta;
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.repository.PautaRepository;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+import com.controlevotacao.util.CpfCodec;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Exporta os votos de uma pauta em CSV (cpf,voto) ou NDJSON ({"cpf": "...", "voto": "SIM"} por linha), em ordem de cpf.
+//Os votos são lidos aos poucos do banco (transmitirPorPauta, com fetch size) em uma transação somente leitura e escritos
+//direto na saída, sem passar pelo contexto de persistência do JPA, então a memória usada não depende da quantidade de votos.
+@Service
+public class ExportacaoVotosService {
+
+	public static final String CSV = "csv";
+	public static final String NDJSON = "ndjson";
+
+	private static final int TAMANHO_BUFFER = 64 * 1024;
+
+	private final PautaRepository pautaRepository;
+	private final PautaVotacaoRepository pautaVotacaoRepository;
+	private final ObjectMapper objectMapper;
+
+	public ExportacaoVotosService(PautaRepository pautaRepository,
+			                      PautaVotacaoRepository pautaVotacaoRepository,
+			                      ObjectMapper objectMapper) {
+		this.pautaRepository = pautaRepository;
+		this.pautaVotacaoRepository = pautaVotacaoRepository;
+		this.objectMapper = objectMapper;
+	}
+
+	public static boolean formatoValido(String formato) {
+		return CSV.equals(formato) || NDJSON.equals(formato);
+	}
+
+	//Número da pauta usado na exportação, ou vazio se a pauta não existir; consultado antes de a resposta ser montada
+	public Optional<Long> obterNumPauta(String idPauta) {
+		return pautaRepository.findById(idPauta).map(Pauta::getNumPauta);
+	}
+
+	//Escreve os votos da pauta na saída
+	@Transactional(readOnly = true)
+	public void exportar(long numPauta, String formato, OutputStream saida) throws IOException {
+		try (Stream<PautaVotacao> votos = pautaVotacaoRepository.transmitirPorPauta(numPauta)) {
+			if (NDJSON.equals(formato)) {
+				escreverNdjson(votos.iterator(), saida);
+			} else {
+				escreverCsv(votos.iterator(), saida);
+			}
+		}
+	}
+
+	private void escreverCsv(Iterator<PautaVotacao> votos, OutputStream saida) throws IOException {
+		Writer escritor = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8), TAMANHO_BUFFER);
+		escritor.write("cpf,voto\n");
+		// a linha é montada no mesmo char[]: 11 dígitos, vírgula, SIM ou NAO e quebra de linha
+		char[] linha = new char[CpfCodec.TAMANHO + 5];
+		linha[CpfCodec.TAMANHO] = ',';
+		linha[linha.length - 1] = '\n';
+		while (votos.hasNext()) {
+			PautaVotacao voto = votos.next();
+			CpfCodec.escrever(voto.getCodCpf(), linha, 0);
+			voto.getVoto().name().getChars(0, 3, linha, CpfCodec.TAMANHO + 1);
+			escritor.write(linha);
+		}
+		escritor.flush();
+	}
+
+	private void escreverNdjson(Iterator<PautaVotacao> votos, OutputStream saida) throws IOException {
+		JsonGenerator gerador = objectMapper.getFactory().createGenerator(saida);
+		gerador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		// cada voto termina com quebra de linha própria, sem o espaço que o Jackson põe entre valores
+		gerador.setRootValueSeparator(null);
+		char[] cpf = new char[CpfCodec.TAMANHO];
+		while (votos.hasNext()) {
+			PautaVotacao voto = votos.next();
+			CpfCodec.escrever(voto.getCodCpf(), cpf, 0);
+			gerador.writeStartObject();
+			gerador.writeFieldName("cpf");
+			gerador.writeString(cpf, 0, cpf.length);
+			gerador.writeStringField("voto", voto.getVoto().name());
+			gerador.writeEndObject();
+			gerador.writeRaw('\n');
+		}
+		gerador.flush();
+	}
+}
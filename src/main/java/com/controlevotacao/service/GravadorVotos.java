@@ -0,0 +1,19 @@
+package com.controlevotacao.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.controlevotacao.model.PautaVotacao;
+
+//Estratégia de gravação dos votos já validados, escolhida pela propriedade votacao.gravacao.modo.
+//O future é completado com REGISTRADO ou CPF_DUPLICADO somente depois que o voto estiver gravado de forma durável:
+//no banco ou, no modo diario, no diário em disco, de onde chega ao banco logo depois.
+public interface GravadorVotos {
+
+	CompletableFuture<String> gravar(PautaVotacao voto);
+
+	//Espera os votos já confirmados chegarem ao banco, antes de apurar o resultado; false se o tempo acabar.
+	//Os modos que só confirmam depois do commit não têm o que esperar.
+	default boolean aguardarAplicacao(long timeoutMillis) throws InterruptedException {
+		return true;
+	}
+}
@@ -0,0 +1,247 @@
+package com.controlevotacao.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+//Confirma os votos assim que estão no diário em disco (DiarioVotos), sem esperar o commit no banco.
+//Os votos são acrescentados ao segmento mapeado em memória e uma thread grava em disco (force) de uma vez todos
+//os acrescentados desde a gravação anterior, completando em seguida as requisições deles (group commit). Outra thread
+//percorre o diário atrás dos votos já gravados em disco e os insere em pauta_votacao em batch, apagando cada segmento
+//quando todos os votos dele estão no banco. Na subida, os segmentos que sobraram são reaplicados antes de o estado
+//ser carregado do banco; a reaplicação mantém os votos que já existem, então aplicar o mesmo voto duas vezes não muda nada.
+//A duplicidade de cpf é conferida no conjunto em memória da sessão antes do diário, por isso o modo não pode ser usado
+//com várias instâncias, em que só a chave primária do banco enxerga os votos das outras.
+@Component
+@ConditionalOnProperty(name = "votacao.gravacao.modo", havingValue = "diario")
+public class GravadorVotosDiario implements GravadorVotos {
+
+	private static final Logger log = LoggerFactory.getLogger(GravadorVotosDiario.class);
+
+	private final PautaVotacaoRepository pautaVotacaoRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final Path diretorio;
+	private final int tamanhoSegmento;
+	private final int tamanhoLote;
+	private final Queue<VotoPendente> aguardandoDisco = new ConcurrentLinkedQueue<>();
+	private final Thread gravadora;
+	private final Thread aplicadora;
+	private DiarioVotos diario;
+	private volatile boolean ativo = true;
+	private volatile boolean gravadoraOciosa;
+	// registros gravados em disco e registros inseridos no banco
+	private volatile long emDisco;
+	private volatile long aplicados;
+
+	@Autowired
+	public GravadorVotosDiario(PautaVotacaoRepository pautaVotacaoRepository,
+			                   PlatformTransactionManager transactionManager,
+			                   MeterRegistry registry,
+			                   @Value("${votacao.gravacao.diario.diretorio:./data/diario-votos}") String diretorio,
+			                   @Value("${votacao.gravacao.diario.tamanho-segmento-mb:64}") int tamanhoSegmentoMb,
+			                   @Value("${votacao.gravacao.lote.tamanho:500}") int tamanhoLote,
+			                   @Value("${votacao.cluster.habilitado:false}") boolean cluster) {
+		this(pautaVotacaoRepository, transactionManager, registry, Paths.get(diretorio), tamanhoSegmentoMb * 1024 * 1024,
+				tamanhoLote, cluster);
+	}
+
+	//Tamanho do segmento em bytes, para os testes usarem segmentos de poucos registros
+	GravadorVotosDiario(PautaVotacaoRepository pautaVotacaoRepository, PlatformTransactionManager transactionManager,
+			MeterRegistry registry, Path diretorio, int tamanhoSegmento, int tamanhoLote, boolean cluster) {
+		if (cluster) {
+			throw new IllegalStateException(
+					"votacao.gravacao.modo=diario confere a duplicidade de cpf só nesta instância e não pode ser usado com votacao.cluster.habilitado");
+		}
+		this.pautaVotacaoRepository = pautaVotacaoRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.diretorio = diretorio;
+		this.tamanhoSegmento = tamanhoSegmento;
+		this.tamanhoLote = tamanhoLote;
+		this.gravadora = new Thread(this::gravarEmDisco, "diario-votos-disco");
+		this.gravadora.setDaemon(true);
+		this.aplicadora = new Thread(this::aplicarNoBanco, "diario-votos-banco");
+		this.aplicadora.setDaemon(true);
+		Gauge.builder("votacao.gravacao.diario.pendentes", this, g -> g.diario != null ? g.diario.getEscritos() - g.aplicados : 0)
+				.description("Votos confirmados pelo diário que ainda não estão no banco")
+				.register(registry);
+	}
+
+	//Reaplica os segmentos que sobraram da execução anterior e começa um diário novo
+	@PostConstruct
+	public void iniciar() throws IOException {
+		Files.createDirectories(diretorio);
+		long proximoSegmento = 0;
+		for (Path segmento : DiarioVotos.listarSegmentos(diretorio)) {
+			reaplicar(segmento);
+			proximoSegmento = DiarioVotos.indice(segmento) + 1;
+			Files.delete(segmento);
+		}
+		diario = new DiarioVotos(diretorio, proximoSegmento, tamanhoSegmento);
+		gravadora.start();
+		aplicadora.start();
+	}
+
+	//Para de aceitar votos, grava em disco os acrescentados e espera a aplicação no banco;
+	//o que não chegar ao banco fica no diário para a próxima subida
+	@PreDestroy
+	public void parar() throws InterruptedException {
+		synchronized (diario) {
+			ativo = false;
+		}
+		LockSupport.unpark(gravadora);
+		gravadora.join(TimeUnit.SECONDS.toMillis(5));
+		aplicadora.join(TimeUnit.SECONDS.toMillis(10));
+		if (!aplicadora.isAlive() && aplicados == diario.getEscritos()) {
+			try {
+				diario.descartarTodos();
+			} catch (IOException e) {
+				// os segmentos que ficarem são reaplicados sem efeito na próxima subida
+				log.warn("Não foi possível apagar o diário de votos: {}", e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public CompletableFuture<String> gravar(PautaVotacao voto) {
+		VotoPendente pendente = new VotoPendente();
+		try {
+			// o registro e a fila de espera do disco ficam na mesma ordem
+			synchronized (diario) {
+				if (!ativo) {
+					throw new IllegalStateException("Diário de votos encerrado");
+				}
+				pendente.numero = diario.anexar(voto);
+				aguardandoDisco.add(pendente);
+			}
+		} catch (IOException | RuntimeException e) {
+			pendente.resultado.completeExceptionally(e);
+			return pendente.resultado;
+		}
+		if (gravadoraOciosa) {
+			LockSupport.unpark(gravadora);
+		}
+		return pendente.resultado;
+	}
+
+	@Override
+	public boolean aguardarAplicacao(long timeoutMillis) throws InterruptedException {
+		long alvo = diario.getEscritos();
+		long prazo = System.currentTimeMillis() + timeoutMillis;
+		while (aplicados < alvo) {
+			if (System.currentTimeMillis() >= prazo) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	//Grava em disco, de uma vez, tudo o que foi acrescentado desde a gravação anterior e confirma os votos;
+	//enquanto um force está em andamento os votos seguintes se acumulam para o próximo
+	private void gravarEmDisco() {
+		while (ativo || emDisco < diario.getEscritos()) {
+			long alvo = diario.getEscritos();
+			if (alvo == emDisco) {
+				gravadoraOciosa = true;
+				if (ativo && diario.getEscritos() == emDisco) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+				}
+				gravadoraOciosa = false;
+				continue;
+			}
+			try {
+				diario.forcar(emDisco, alvo);
+			} catch (RuntimeException e) {
+				// os votos continuam no diário; a próxima volta tenta gravar de novo
+				log.error("Erro ao gravar o diário de votos em disco: {}", e.getMessage(), e);
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+				continue;
+			}
+			emDisco = alvo;
+			VotoPendente pendente;
+			while ((pendente = aguardandoDisco.peek()) != null && pendente.numero < alvo) {
+				aguardandoDisco.poll();
+				pendente.resultado.complete("REGISTRADO");
+			}
+		}
+	}
+
+	//Insere no banco, em batch, os votos já gravados em disco e apaga os segmentos aplicados por inteiro
+	private void aplicarNoBanco() {
+		while (ativo || gravadora.isAlive() || aplicados < emDisco) {
+			List<PautaVotacao> votos = diario.ler(aplicados, emDisco, tamanhoLote);
+			if (votos.isEmpty()) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+				continue;
+			}
+			try {
+				transactionTemplate.executeWithoutResult(status -> pautaVotacaoRepository.mesclarLote(votos));
+				aplicados += votos.size();
+				diario.descartarAte(aplicados);
+			} catch (Exception e) {
+				// os votos continuam no diário e são aplicados de novo na próxima tentativa ou na próxima subida
+				log.error("Erro ao aplicar {} votos do diário no banco: {}", votos.size(), e.getMessage(), e);
+				if (!ativo && !gravadora.isAlive()) {
+					return;
+				}
+				LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+			}
+		}
+	}
+
+	private void reaplicar(Path segmento) throws IOException {
+		List<PautaVotacao> lote = new ArrayList<>(tamanhoLote);
+		long[] total = new long[1];
+		boolean integro = DiarioVotos.percorrer(segmento, voto -> {
+			lote.add(voto);
+			if (lote.size() == tamanhoLote) {
+				mesclar(lote);
+				total[0] += lote.size();
+				lote.clear();
+			}
+		});
+		mesclar(lote);
+		total[0] += lote.size();
+		if (!integro) {
+			log.warn("Segmento {} do diário termina em um registro incompleto, descartado", segmento.getFileName());
+		}
+		log.info("{} votos do segmento {} do diário reaplicados no banco", total[0], segmento.getFileName());
+	}
+
+	private void mesclar(List<PautaVotacao> votos) {
+		if (!votos.isEmpty()) {
+			transactionTemplate.executeWithoutResult(status -> pautaVotacaoRepository.mesclarLote(votos));
+		}
+	}
+
+	private static class VotoPendente {
+		private long numero;
+		private final CompletableFuture<String> resultado = new CompletableFuture<>();
+	}
+}
@@ -0,0 +1,37 @@
+package com.controlevotacao.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+
+//Grava cada voto na própria thread da requisição com um único INSERT, sem consulta prévia (modo padrão)
+@Component
+@ConditionalOnProperty(name = "votacao.gravacao.modo", havingValue = "direto", matchIfMissing = true)
+public class GravadorVotosDireto implements GravadorVotos {
+
+	private final PautaVotacaoRepository pautaVotacaoRepository;
+
+	public GravadorVotosDireto(PautaVotacaoRepository pautaVotacaoRepository) {
+		this.pautaVotacaoRepository = pautaVotacaoRepository;
+	}
+
+	@Override
+	public CompletableFuture<String> gravar(PautaVotacao voto) {
+		try {
+			pautaVotacaoRepository.inserir(voto);
+			return CompletableFuture.completedFuture("REGISTRADO");
+		} catch (DuplicateKeyException e) {
+			// a chave primária (id_pauta, cod_cpf) é a garantia final contra voto duplicado
+			return CompletableFuture.completedFuture("CPF_DUPLICADO");
+		} catch (Exception e) {
+			CompletableFuture<String> falha = new CompletableFuture<>();
+			falha.completeExceptionally(e);
+			return falha;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package com.controlevotacao.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+
+//Grava os votos em lote (group commit): as requisições enfileiram os votos em uma fila limitada e uma
+//thread gravadora os insere em batch JDBC, com um único commit a cada N votos ou a cada poucos milissegundos.
+//Cada requisição só recebe o resultado depois que a transação do seu lote foi confirmada.
+@Component
+@ConditionalOnProperty(name = "votacao.gravacao.modo", havingValue = "lote")
+public class GravadorVotosLote implements GravadorVotos {
+
+	private static final Logger log = LoggerFactory.getLogger(GravadorVotosLote.class);
+
+	private final PautaVotacaoRepository pautaVotacaoRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final BlockingQueue<VotoPendente> fila;
+	private final int tamanhoLote;
+	private final long esperaMaximaNanos;
+	private final long timeoutEnfileiramentoMs;
+	private final Thread gravadora;
+	private volatile boolean ativo = true;
+
+	public GravadorVotosLote(PautaVotacaoRepository pautaVotacaoRepository,
+			                 PlatformTransactionManager transactionManager,
+			                 @Value("${votacao.gravacao.lote.capacidade-fila:10000}") int capacidadeFila,
+			                 @Value("${votacao.gravacao.lote.tamanho:500}") int tamanhoLote,
+			                 @Value("${votacao.gravacao.lote.espera-ms:5}") long esperaMaximaMs,
+			                 @Value("${votacao.gravacao.lote.timeout-enfileiramento-ms:1000}") long timeoutEnfileiramentoMs) {
+		this.pautaVotacaoRepository = pautaVotacaoRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+		this.tamanhoLote = tamanhoLote;
+		this.esperaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+		this.timeoutEnfileiramentoMs = timeoutEnfileiramentoMs;
+		this.gravadora = new Thread(this::executar, "gravador-votos-lote");
+		this.gravadora.setDaemon(true);
+	}
+
+	@PostConstruct
+	public void iniciar() {
+		gravadora.start();
+	}
+
+	//Para de aceitar votos e espera a thread gravadora esvaziar a fila
+	@PreDestroy
+	public void parar() throws InterruptedException {
+		ativo = false;
+		gravadora.join(TimeUnit.SECONDS.toMillis(10));
+	}
+
+	@Override
+	public CompletableFuture<String> gravar(PautaVotacao voto) {
+		VotoPendente pendente = new VotoPendente(voto);
+		try {
+			if (!ativo || !fila.offer(pendente, timeoutEnfileiramentoMs, TimeUnit.MILLISECONDS)) {
+				pendente.resultado.completeExceptionally(
+						new IllegalStateException("Fila de gravação de votos cheia ou encerrada"));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pendente.resultado.completeExceptionally(e);
+		}
+		return pendente.resultado;
+	}
+
+	private void executar() {
+		List<VotoPendente> lote = new ArrayList<>(tamanhoLote);
+		while (ativo || !fila.isEmpty()) {
+			try {
+				VotoPendente primeiro = fila.poll(100, TimeUnit.MILLISECONDS);
+				if (primeiro == null) {
+					continue;
+				}
+				lote.add(primeiro);
+
+				// junta os votos que chegarem até completar o lote ou esgotar a espera máxima
+				long prazo = System.nanoTime() + esperaMaximaNanos;
+				while (lote.size() < tamanhoLote) {
+					fila.drainTo(lote, tamanhoLote - lote.size());
+					long restante = prazo - System.nanoTime();
+					if (lote.size() >= tamanhoLote || restante <= 0) {
+						break;
+					}
+					VotoPendente proximo = fila.poll(restante, TimeUnit.NANOSECONDS);
+					if (proximo == null) {
+						break;
+					}
+					lote.add(proximo);
+				}
+
+				gravarLote(lote);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (VotoPendente pendente : lote) {
+					pendente.resultado.completeExceptionally(e);
+				}
+				break;
+			} catch (Exception e) {
+				log.error("Erro inesperado na thread gravadora de votos: {}", e.getMessage(), e);
+				for (VotoPendente pendente : lote) {
+					pendente.resultado.completeExceptionally(e);
+				}
+			} finally {
+				lote.clear();
+			}
+		}
+	}
+
+	private void gravarLote(List<VotoPendente> lote) {
+		List<PautaVotacao> votos = new ArrayList<>(lote.size());
+		for (VotoPendente pendente : lote) {
+			votos.add(pendente.voto);
+		}
+
+		try {
+			transactionTemplate.executeWithoutResult(status -> pautaVotacaoRepository.inserirLote(votos));
+			for (VotoPendente pendente : lote) {
+				pendente.resultado.complete("REGISTRADO");
+			}
+		} catch (DataIntegrityViolationException e) {
+			// algum voto do lote violou a chave primária: o lote inteiro foi desfeito e é regravado voto a voto
+			log.debug("Lote com {} votos rejeitado por violação de chave, regravando individualmente", lote.size());
+			for (VotoPendente pendente : lote) {
+				gravarIndividual(pendente);
+			}
+		} catch (Exception e) {
+			log.error("Erro ao gravar lote com {} votos: {}", lote.size(), e.getMessage(), e);
+			for (VotoPendente pendente : lote) {
+				pendente.resultado.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void gravarIndividual(VotoPendente pendente) {
+		try {
+			transactionTemplate.executeWithoutResult(
+					status -> pautaVotacaoRepository.inserirLote(Collections.singletonList(pendente.voto)));
+			pendente.resultado.complete("REGISTRADO");
+		} catch (DuplicateKeyException e) {
+			pendente.resultado.complete("CPF_DUPLICADO");
+		} catch (Exception e) {
+			pendente.resultado.completeExceptionally(e);
+		}
+	}
+
+	private static class VotoPendente {
+		private final PautaVotacao voto;
+		private final CompletableFuture<String> resultado = new CompletableFuture<>();
+
+		private VotoPendente(PautaVotacao voto) {
+			this.voto = voto;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.controlevotacao.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.controlevotacao.repository.CoordenacaoClusterRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+//Escolhe, entre as instâncias da aplicação ligadas ao mesmo banco, a única que fecha as sessões.
+//A instância líder detém uma concessão com prazo na tabela lider_cluster e a renova periodicamente; se ela parar,
+//a concessão vence e outra instância a toma na renovação seguinte. A instância só se considera líder até o prazo
+//contado a partir do início da própria renovação, que termina antes do prazo gravado pelo banco.
+//A renovação roda em um scheduler de uma thread só dela, para não esperar atrás das outras tarefas periódicas
+//(difusão do placar, leitura dos eventos, recarga do placar) e deixar a concessão vencer por atraso.
+//Com o cluster desabilitado (uma instância só) a instância é sempre a líder e nada é gravado no banco.
+@Component
+public class LiderancaCluster {
+
+	private static final Logger log = LoggerFactory.getLogger(LiderancaCluster.class);
+
+	static final String PAPEL_FECHAMENTO = "fechamento-sessoes";
+
+	private final CoordenacaoClusterRepository repository;
+	private final boolean habilitado;
+	private final long duracaoMs;
+	private final long renovacaoMs;
+	private final String idNo;
+
+	// System.nanoTime até o qual a concessão vale para esta instância
+	private volatile long validaAteNanos;
+	private volatile boolean lider;
+	private Runnable aoAssumir;
+	private ThreadPoolTaskScheduler scheduler;
+	private ScheduledFuture<?> renovacao;
+
+	public LiderancaCluster(CoordenacaoClusterRepository repository,
+			                MeterRegistry registry,
+			                @Value("${votacao.cluster.habilitado:false}") boolean habilitado,
+			                @Value("${votacao.cluster.concessao.duracao-ms:10000}") long duracaoMs,
+			                @Value("${votacao.cluster.concessao.renovacao-ms:3000}") long renovacaoMs) {
+		this.repository = repository;
+		this.habilitado = habilitado;
+		this.duracaoMs = duracaoMs;
+		this.renovacaoMs = renovacaoMs;
+		this.idNo = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+		Gauge.builder("votacao.cluster.lider", this, l -> l.isLider() ? 1 : 0)
+				.description("1 se esta instância é a que fecha as sessões")
+				.register(registry);
+	}
+
+	//Começa a disputar a concessão; aoAssumir roda toda vez que esta instância passa a ser a líder
+	public synchronized void iniciar(Runnable aoAssumir) {
+		if (!habilitado || renovacao != null) {
+			return;
+		}
+		this.aoAssumir = aoAssumir;
+		repository.criarPapel(PAPEL_FECHAMENTO);
+		renovar();
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(1);
+		scheduler.setThreadNamePrefix("lideranca-cluster-");
+		scheduler.initialize();
+		renovacao = scheduler.scheduleWithFixedDelay(this::renovar, renovacaoMs);
+	}
+
+	@PreDestroy
+	public synchronized void parar() {
+		if (renovacao == null) {
+			return;
+		}
+		renovacao.cancel(false);
+		renovacao = null;
+		scheduler.shutdown();
+		scheduler = null;
+		if (isLider()) {
+			lider = false;
+			try {
+				repository.liberarConcessao(PAPEL_FECHAMENTO, idNo);
+			} catch (DataAccessException e) {
+				log.warn("Não foi possível liberar a concessão {}: {}", PAPEL_FECHAMENTO, e.getMessage());
+			}
+		}
+	}
+
+	public boolean isHabilitado() {
+		return habilitado;
+	}
+
+	//Indica se esta instância deve fechar as sessões
+	public boolean isLider() {
+		return !habilitado || (lider && validaAteNanos - System.nanoTime() > 0);
+	}
+
+	public String getIdNo() {
+		return idNo;
+	}
+
+	private void renovar() {
+		long inicio = System.nanoTime();
+		boolean obtida;
+		try {
+			obtida = repository.renovarConcessao(PAPEL_FECHAMENTO, idNo, duracaoMs);
+		} catch (DataAccessException e) {
+			// sem acesso ao banco a concessão não é renovada e deixa de valer no prazo dela
+			log.warn("Erro ao renovar a concessão {}: {}", PAPEL_FECHAMENTO, e.getMessage());
+			return;
+		}
+		if (!obtida) {
+			if (lider) {
+				log.info("Instância {} deixou de fechar as sessões", idNo);
+			}
+			lider = false;
+			return;
+		}
+		// assume se não era líder ou se a concessão anterior venceu antes desta renovação
+		boolean assumiu = !isLider();
+		validaAteNanos = inicio + TimeUnit.MILLISECONDS.toNanos(duracaoMs);
+		lider = true;
+		if (assumiu) {
+			log.info("Instância {} passou a fechar as sessões", idNo);
+			try {
+				aoAssumir.run();
+			} catch (RuntimeException e) {
+				log.error("Erro ao assumir o fechamento das sessões: {}", e.getMessage(), e);
+			}
+		}
+	}
+}
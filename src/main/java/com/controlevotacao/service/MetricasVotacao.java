@@ -0,0 +1,168 @@
+package com.controlevotacao.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+//Métricas do fluxo de votação expostas pelo Micrometer (/actuator/prometheus):
+//tempo de cada etapa do voto, contagem por código de resultado, taxa de votos das sessões abertas
+//e histogramas da abertura de sessão e da consulta de resultado.
+//Os medidores são registrados uma única vez, por etapa e por código de resultado conhecido, para não haver busca no
+//registry a cada voto, abertura ou consulta.
+@Component
+public class MetricasVotacao {
+
+	//Etapas do caminho do voto, usadas como tag "etapa" do timer votacao.voto.etapa
+	public enum Etapa {
+		SESSAO("sessao"), VALIDACAO_CPF("validacao_cpf"), DUPLICIDADE("duplicidade"), GRAVACAO("gravacao");
+
+		private final String tag;
+
+		Etapa(String tag) {
+			this.tag = tag;
+		}
+	}
+
+	private static final String[] RESULTADOS_CONHECIDOS = {
+			"REGISTRADO", "CPF_DUPLICADO", "FECHADA", "NAO_ENCONTRADA", "ERRO",
+			"SEM_PAUTA_ABERTA", "PAUTA_NAO_INFORMADA", "CPF_INVALIDO", "CPF_NAO_HABILITADO", "ERRO_VALIDACAO_CPF", "VOTO_INVALIDO" };
+
+	private static final String[] RESULTADOS_ABERTURA = { "ABERTA", "JA_ABERTA", "FECHADA", "NAO_ENCONTRADA", "ERRO" };
+
+	private static final String[] RESULTADOS_CONSULTA = { "OK", "NAO_FECHADA", "NAO_ENCONTRADA", "ERRO" };
+
+	private static final int JANELA_TAXA_SEGUNDOS = 60;
+
+	private final MeterRegistry registry;
+	private final Timer[] etapas = new Timer[Etapa.values().length];
+	private final ConcurrentMap<String, Counter> resultados = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Timer> aberturas = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Timer> consultas = new ConcurrentHashMap<>();
+
+	// votos registrados por segundo nos últimos 60 segundos, em baldes indexados pelo segundo
+	private final AtomicLongArray votosPorSegundo = new AtomicLongArray(JANELA_TAXA_SEGUNDOS);
+	private final AtomicLongArray segundoDoBalde = new AtomicLongArray(JANELA_TAXA_SEGUNDOS);
+
+	public MetricasVotacao(MeterRegistry registry, RegistroSessao registroSessao) {
+		this.registry = registry;
+		for (Etapa etapa : Etapa.values()) {
+			etapas[etapa.ordinal()] = Timer.builder("votacao.voto.etapa")
+					.description("Tempo de cada etapa do registro de um voto")
+					.tag("etapa", etapa.tag)
+					.publishPercentileHistogram()
+					.register(registry);
+		}
+		for (String resultado : RESULTADOS_CONHECIDOS) {
+			resultados.put(resultado, contador(resultado));
+		}
+		for (String resultado : RESULTADOS_ABERTURA) {
+			aberturas.put(resultado, timerAbertura(resultado));
+		}
+		for (String resultado : RESULTADOS_CONSULTA) {
+			consultas.put(resultado, timerConsulta(resultado));
+		}
+		Gauge.builder("votacao.sessao.votos.por.segundo", this, MetricasVotacao::taxaVotos)
+				.description("Média de votos registrados por segundo no último minuto")
+				.register(registry);
+		Gauge.builder("votacao.sessao.votos", registroSessao, MetricasVotacao::votosSessoesAbertas)
+				.description("Cpfs que já votaram nas sessões abertas")
+				.register(registry);
+		Gauge.builder("votacao.sessoes.abertas", registroSessao, r -> r.listar().size())
+				.description("Pautas com sessão aberta")
+				.register(registry);
+	}
+
+	//Registra a duração da etapa iniciada em inicioNanos (System.nanoTime)
+	public void registrarEtapa(Etapa etapa, long inicioNanos) {
+		etapas[etapa.ordinal()].record(System.nanoTime() - inicioNanos, TimeUnit.NANOSECONDS);
+	}
+
+	//Conta o código de resultado de um voto
+	public void contarResultado(String resultado) {
+		Counter contador = resultados.get(resultado);
+		if (contador == null) {
+			contador = resultados.computeIfAbsent(resultado, this::contador);
+		}
+		contador.increment();
+		if ("REGISTRADO".equals(resultado)) {
+			contarVotoNaTaxa();
+		}
+	}
+
+	public void registrarAberturaSessao(long inicioNanos, String resultado) {
+		Timer timer = aberturas.get(resultado);
+		if (timer == null) {
+			timer = aberturas.computeIfAbsent(resultado, this::timerAbertura);
+		}
+		timer.record(System.nanoTime() - inicioNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void registrarConsultaResultado(long inicioNanos, String resultado) {
+		Timer timer = consultas.get(resultado);
+		if (timer == null) {
+			timer = consultas.computeIfAbsent(resultado, this::timerConsulta);
+		}
+		timer.record(System.nanoTime() - inicioNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private Counter contador(String resultado) {
+		return Counter.builder("votacao.voto.resultado")
+				.description("Votos por código de resultado")
+				.tag("resultado", resultado)
+				.register(registry);
+	}
+
+	private Timer timerAbertura(String resultado) {
+		return Timer.builder("votacao.sessao.abertura")
+				.description("Tempo de abertura de sessão")
+				.tag("resultado", resultado)
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	private Timer timerConsulta(String resultado) {
+		return Timer.builder("votacao.resultado.consulta")
+				.description("Tempo de consulta do resultado de uma pauta")
+				.tag("resultado", resultado)
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	private void contarVotoNaTaxa() {
+		long segundo = System.currentTimeMillis() / 1000;
+		int i = (int) (segundo % JANELA_TAXA_SEGUNDOS);
+		long anterior = segundoDoBalde.get(i);
+		// o primeiro voto de um novo segundo zera o balde reaproveitado; a taxa é aproximada
+		if (anterior != segundo && segundoDoBalde.compareAndSet(i, anterior, segundo)) {
+			votosPorSegundo.set(i, 0);
+		}
+		votosPorSegundo.incrementAndGet(i);
+	}
+
+	private double taxaVotos() {
+		long agora = System.currentTimeMillis() / 1000;
+		long total = 0;
+		for (int i = 0; i < JANELA_TAXA_SEGUNDOS; i++) {
+			if (agora - segundoDoBalde.get(i) < JANELA_TAXA_SEGUNDOS) {
+				total += votosPorSegundo.get(i);
+			}
+		}
+		return total / (double) JANELA_TAXA_SEGUNDOS;
+	}
+
+	private static double votosSessoesAbertas(RegistroSessao registroSessao) {
+		long total = 0;
+		for (SessaoAberta sessao : registroSessao.listar()) {
+			total += sessao.getCpfsVotantes().tamanho();
+		}
+		return total;
+	}
+}
@@ -0,0 +1,36 @@
+package com.controlevotacao.service;
+
+import com.controlevotacao.model.StatusPauta;
+
+//Publicado quando uma pauta é criada, tem a sessão aberta ou é fechada, para que quem guarda dados derivados
+//da situação das pautas (como as telas em cache) os descarte. Com várias instâncias da aplicação no mesmo banco,
+//as alterações feitas por outra instância chegam pela SincronizacaoCluster e são publicadas com local = false.
+public class PautaAlteradaEvent {
+
+	private final String idPauta;
+	private final StatusPauta statusPauta;
+	private final boolean local;
+
+	public PautaAlteradaEvent(String idPauta, StatusPauta statusPauta) {
+		this(idPauta, statusPauta, true);
+	}
+
+	public PautaAlteradaEvent(String idPauta, StatusPauta statusPauta, boolean local) {
+		this.idPauta = idPauta;
+		this.statusPauta = statusPauta;
+		this.local = local;
+	}
+
+	public String getIdPauta() {
+		return idPauta;
+	}
+
+	public StatusPauta getStatusPauta() {
+		return statusPauta;
+	}
+
+	//Indica se a alteração foi feita por esta instância
+	public boolean isLocal() {
+		return local;
+	}
+}
@@ -0,0 +1,71 @@
+package com.controlevotacao.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import com.controlevotacao.model.TipoVoto;
+
+//Contadores em memória dos votos SIM e NAO das pautas com sessão aberta.
+//São incrementados a cada voto gravado e carregados do banco na subida, evitando COUNT no resultado parcial e no placar.
+//O placar de uma pauta é criado quando a sessão é carregada e removido quando ela fecha; depois disso o resultado
+//vem de pauta_resultado.
+@Component
+public class PlacarVotos {
+
+	private final ConcurrentMap<String, Placar> placares = new ConcurrentHashMap<>();
+
+	//Contabiliza um voto já gravado no banco; o voto cuja gravação termina depois do fechamento não recria o placar
+	public void incrementar(String idPauta, TipoVoto voto) {
+		Placar placar = placares.get(idPauta);
+		if (placar == null) {
+			return;
+		}
+		if (voto == TipoVoto.SIM) {
+			placar.sim.increment();
+		} else {
+			placar.nao.increment();
+		}
+	}
+
+	//Retorna o placar da pauta, vazio se ela ainda não recebeu votos
+	public Placar obter(String idPauta) {
+		Placar placar = placares.get(idPauta);
+		return placar != null ? placar : Placar.VAZIO;
+	}
+
+	//Carrega os contadores da pauta com a contagem feita no banco, substituindo os atuais
+	public void carregar(String idPauta, long sim, long nao) {
+		Placar placar = new Placar();
+		placar.sim.add(sim);
+		placar.nao.add(nao);
+		placares.put(idPauta, placar);
+	}
+
+	//Descarta o placar da pauta cuja sessão fechou
+	public void remover(String idPauta) {
+		placares.remove(idPauta);
+	}
+
+	public void limpar() {
+		placares.clear();
+	}
+
+	//Contadores de uma pauta; LongAdder distribui os incrementos concorrentes entre células para não haver disputa
+	public static class Placar {
+		private static final Placar VAZIO = new Placar();
+
+		private final LongAdder sim = new LongAdder();
+		private final LongAdder nao = new LongAdder();
+
+		public long getSim() {
+			return sim.sum();
+		}
+
+		public long getNao() {
+			return nao.sum();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.controlevotacao.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+import com.controlevotacao.model.Pauta;
+
+//Mantém em memória as pautas com sessão aberta para que o caminho do voto não precise consultar o banco.
+//Cada sessão tem o próprio prazo e o próprio conjunto de CPFs votantes, então votos de pautas diferentes
+//não disputam a mesma estrutura. É atualizado na abertura e no fechamento das sessões e reconstruído
+//a partir do banco na subida da aplicação.
+@Component
+public class RegistroSessao {
+
+	private final ConcurrentMap<String, SessaoAberta> porId = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Long, SessaoAberta> porNumero = new ConcurrentHashMap<>();
+
+	//Retorna a sessão aberta da pauta ou null se não houver
+	public SessaoAberta obter(String idPauta) {
+		return porId.get(idPauta);
+	}
+
+	//Retorna a sessão aberta da pauta pela chave numérica usada nos votos, ou null se não houver
+	public SessaoAberta obterPorNumero(long numPauta) {
+		return porNumero.get(numPauta);
+	}
+
+	//Retorna a sessão que recebe o voto, somente se ainda estiver dentro do prazo de votação: a da pauta informada ou,
+	//sem pauta informada, a única sessão dentro do prazo (null se não houver nenhuma ou houver mais de uma)
+	public SessaoAberta obterAtiva(String idPauta) {
+		long agora = System.currentTimeMillis();
+		if (idPauta != null) {
+			SessaoAberta sessao = porId.get(idPauta);
+			return sessao != null && sessao.aceitaVotos(agora) ? sessao : null;
+		}
+		SessaoAberta unica = null;
+		for (SessaoAberta sessao : porId.values()) {
+			if (sessao.aceitaVotos(agora)) {
+				if (unica != null) {
+					return null;
+				}
+				unica = sessao;
+			}
+		}
+		return unica;
+	}
+
+	//Sessões ainda dentro do prazo de votação
+	public List<SessaoAberta> listarAtivas() {
+		long agora = System.currentTimeMillis();
+		List<SessaoAberta> ativas = new ArrayList<>();
+		for (SessaoAberta sessao : porId.values()) {
+			if (sessao.aceitaVotos(agora)) {
+				ativas.add(sessao);
+			}
+		}
+		return ativas;
+	}
+
+	//Todas as sessões registradas, inclusive as que já passaram do prazo e aguardam o fechamento
+	public Collection<SessaoAberta> listar() {
+		return porId.values();
+	}
+
+	//Registra a sessão aberta da pauta, com o conjunto de CPFs votantes vazio, e a retorna
+	public SessaoAberta abrir(Pauta pauta) {
+		SessaoAberta nova = new SessaoAberta(pauta.getIdPauta(), pauta.getNumPauta(),
+				pauta.getInicioSessao(), pauta.getFimSessao());
+		porNumero.put(nova.getNumPauta(), nova);
+		porId.put(nova.getIdPauta(), nova);
+		return nova;
+	}
+
+	//Remove a sessão da pauta informada
+	public void fechar(String idPauta) {
+		SessaoAberta atual = porId.remove(idPauta);
+		if (atual != null) {
+			porNumero.remove(atual.getNumPauta(), atual);
+		}
+	}
+
+	public void limpar() {
+		porId.clear();
+		porNumero.clear();
+	}
+}
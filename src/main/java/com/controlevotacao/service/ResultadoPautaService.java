@@ -0,0 +1,87 @@
+package com.controlevotacao.service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.controlevotacao.model.PautaResultado;
+import com.controlevotacao.model.StatusPauta;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.repository.PautaRepository;
+import com.controlevotacao.repository.PautaResultadoRepository;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+//Resultado das pautas fechadas: apurado uma única vez, com uma contagem agrupada, na mesma transação que fecha a sessão
+//e gravado em pauta_resultado. A consulta do resultado passa a ser uma leitura pela chave primária, com cache em memória
+//na frente; como o resultado de uma pauta fechada não muda, o cache não precisa de invalidação.
+@Service
+public class ResultadoPautaService {
+
+	private final PautaRepository pautaRepository;
+	private final PautaVotacaoRepository pautaVotacaoRepository;
+	private final PautaResultadoRepository pautaResultadoRepository;
+	private final Cache<String, PautaResultado> cache;
+
+	public ResultadoPautaService(PautaRepository pautaRepository,
+			                     PautaVotacaoRepository pautaVotacaoRepository,
+			                     PautaResultadoRepository pautaResultadoRepository,
+			                     MeterRegistry registry,
+			                     @Value("${votacao.resultado.cache.tamanho-maximo:10000}") long tamanhoMaximo) {
+		this.pautaRepository = pautaRepository;
+		this.pautaVotacaoRepository = pautaVotacaoRepository;
+		this.pautaResultadoRepository = pautaResultadoRepository;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(registry, cache, "resultado-pauta", Tags.empty());
+	}
+
+	//Fecha a sessão da pauta e grava o resultado na mesma transação; retorna false se a pauta não estava aberta
+	@Transactional
+	public boolean fecharSessao(String idPauta, long numPauta) {
+		if (pautaRepository.fecharSessao(idPauta, StatusPauta.ABERTA, StatusPauta.FECHADA) == 0) {
+			return false;
+		}
+		pautaResultadoRepository.save(apurar(idPauta, numPauta, LocalDateTime.now()));
+		return true;
+	}
+
+	//Resultado gravado da pauta, lido do cache ou pela chave primária; vazio se a pauta não tiver resultado gravado
+	public Optional<PautaResultado> obter(String idPauta) {
+		return Optional.ofNullable(cache.get(idPauta, id -> pautaResultadoRepository.findById(id).orElse(null)));
+	}
+
+	//Resultado da pauta que já está no cache, sem ler o banco; vazio se a pauta não foi consultada desde a subida
+	public Optional<PautaResultado> obterEmCache(String idPauta) {
+		return Optional.ofNullable(cache.getIfPresent(idPauta));
+	}
+
+	//Apura e grava o resultado de uma pauta fechada antes da tabela pauta_resultado existir
+	public PautaResultado gravarResultadoAnterior(String idPauta, long numPauta, LocalDateTime dataFechamento) {
+		PautaResultado resultado = apurar(idPauta, numPauta, dataFechamento);
+		try {
+			pautaResultadoRepository.save(resultado);
+		} catch (DataIntegrityViolationException e) {
+			// outra requisição gravou o mesmo resultado ao mesmo tempo
+		}
+		cache.put(idPauta, resultado);
+		return resultado;
+	}
+
+	private PautaResultado apurar(String idPauta, long numPauta, LocalDateTime dataFechamento) {
+		long[] contagem = pautaVotacaoRepository.contarVotosPorVoto(numPauta);
+		return new PautaResultado(idPauta, contagem[TipoVoto.SIM.getCodigo()], contagem[TipoVoto.NAO.getCodigo()],
+				dataFechamento);
+	}
+}
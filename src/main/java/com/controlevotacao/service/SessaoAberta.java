@@ -0,0 +1,79 @@
+package com.controlevotacao.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Sessão de votação aberta mantida em memória pelo RegistroSessao: prazo imutável, CPFs que já votaram
+//e quantidade de votos aceitos que ainda estão sendo gravados
+public final class SessaoAberta {
+
+	private final String idPauta;
+	private final long numPauta;
+	private final LocalDateTime inicioSessao;
+	private final LocalDateTime fimSessao;
+	private final long fimSessaoMillis;
+	private final ConjuntoCpf cpfsVotantes = new ConjuntoCpf();
+	private final AtomicInteger gravacoesEmAndamento = new AtomicInteger();
+
+	public SessaoAberta(String idPauta, long numPauta, LocalDateTime inicioSessao, LocalDateTime fimSessao) {
+		this.idPauta = idPauta;
+		this.numPauta = numPauta;
+		this.inicioSessao = inicioSessao;
+		this.fimSessao = fimSessao;
+		// pré-calcula o prazo em millis para a comparação do caminho do voto não converter datas
+		this.fimSessaoMillis = fimSessao.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	public String getIdPauta() {
+		return idPauta;
+	}
+
+	public long getNumPauta() {
+		return numPauta;
+	}
+
+	public LocalDateTime getInicioSessao() {
+		return inicioSessao;
+	}
+
+	public LocalDateTime getFimSessao() {
+		return fimSessao;
+	}
+
+	public long getFimSessaoMillis() {
+		return fimSessaoMillis;
+	}
+
+	//CPFs que já votaram nesta sessão
+	public ConjuntoCpf getCpfsVotantes() {
+		return cpfsVotantes;
+	}
+
+	//Indica se a sessão ainda aceita votos no instante informado
+	public boolean aceitaVotos(long agoraMillis) {
+		return agoraMillis < fimSessaoMillis;
+	}
+
+	//Marca o início do registro de um voto; deve ser chamado antes de conferir o prazo
+	public void iniciarGravacao() {
+		gravacoesEmAndamento.incrementAndGet();
+	}
+
+	public void concluirGravacao() {
+		gravacoesEmAndamento.decrementAndGet();
+	}
+
+	//Espera terminarem as gravações dos votos aceitos dentro do prazo; retorna false se o tempo limite acabar antes
+	public boolean aguardarGravacoes(long timeoutMillis) throws InterruptedException {
+		long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (gravacoesEmAndamento.get() > 0) {
+			if (System.nanoTime() - limite >= 0) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+}
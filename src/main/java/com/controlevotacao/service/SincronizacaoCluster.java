@@ -0,0 +1,137 @@
+package com.controlevotacao.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.controlevotacao.model.StatusPauta;
+import com.controlevotacao.repository.CoordenacaoClusterRepository;
+import com.controlevotacao.repository.CoordenacaoClusterRepository.EventoPauta;
+
+//Mantém o estado em memória de cada instância coerente com as alterações feitas pelas outras no mesmo banco.
+//Cada alteração de pauta local é gravada em evento_pauta; as instâncias leem periodicamente os eventos recentes
+//das outras, aplicam no registro de sessões e republicam como PautaAlteradaEvent não local para invalidar os caches.
+//A leitura é por janela de tempo do relógio do banco e os eventos já aplicados são lembrados pelo id, então um evento
+//gravado fora de ordem por transações concorrentes não se perde. Como os votos de uma pauta chegam por todas as
+//instâncias, o placar das sessões abertas também é recarregado do banco periodicamente.
+@Component
+public class SincronizacaoCluster {
+
+	private static final Logger log = LoggerFactory.getLogger(SincronizacaoCluster.class);
+
+	private final CoordenacaoClusterRepository repository;
+	private final LiderancaCluster lideranca;
+	private final VotacaoService votacaoService;
+	private final ApplicationEventPublisher eventos;
+	private final TaskScheduler scheduler;
+	private final boolean habilitado;
+	private final long intervaloMs;
+	private final long janelaMs;
+	private final long intervaloPlacarMs;
+
+	// id do evento -> System.nanoTime em que foi visto, para não aplicar de novo enquanto estiver na janela
+	private final Map<Long, Long> aplicados = new ConcurrentHashMap<>();
+	private long ultimaLimpezaNanos = System.nanoTime();
+	private ScheduledFuture<?> leitura;
+	private ScheduledFuture<?> recargaPlacar;
+
+	public SincronizacaoCluster(CoordenacaoClusterRepository repository,
+			                    LiderancaCluster lideranca,
+			                    VotacaoService votacaoService,
+			                    ApplicationEventPublisher eventos,
+			                    TaskScheduler scheduler,
+			                    @Value("${votacao.cluster.habilitado:false}") boolean habilitado,
+			                    @Value("${votacao.cluster.eventos.intervalo-ms:500}") long intervaloMs,
+			                    @Value("${votacao.cluster.eventos.janela-ms:30000}") long janelaMs,
+			                    @Value("${votacao.cluster.placar.intervalo-ms:2000}") long intervaloPlacarMs) {
+		this.repository = repository;
+		this.lideranca = lideranca;
+		this.votacaoService = votacaoService;
+		this.eventos = eventos;
+		this.scheduler = scheduler;
+		this.habilitado = habilitado;
+		this.intervaloMs = intervaloMs;
+		this.janelaMs = janelaMs;
+		this.intervaloPlacarMs = intervaloPlacarMs;
+	}
+
+	@PostConstruct
+	public void iniciar() {
+		if (!habilitado) {
+			return;
+		}
+		leitura = scheduler.scheduleWithFixedDelay(this::lerEventos, intervaloMs);
+		recargaPlacar = scheduler.scheduleWithFixedDelay(votacaoService::recarregarPlacares, intervaloPlacarMs);
+	}
+
+	@PreDestroy
+	public void parar() {
+		if (leitura != null) {
+			leitura.cancel(false);
+			recargaPlacar.cancel(false);
+		}
+	}
+
+	//Grava as alterações feitas nesta instância para as outras aplicarem
+	@EventListener
+	public void pautaAlterada(PautaAlteradaEvent evento) {
+		if (!habilitado || !evento.isLocal()) {
+			return;
+		}
+		try {
+			repository.inserirEvento(evento.getIdPauta(), evento.getStatusPauta().name(), lideranca.getIdNo());
+		} catch (DataAccessException e) {
+			// as outras instâncias só veem a alteração quando consultarem o banco pela pauta
+			log.error("Erro ao gravar evento da pauta {}: {}", evento.getIdPauta(), e.getMessage());
+		}
+	}
+
+	private void lerEventos() {
+		try {
+			long agora = System.nanoTime();
+			for (EventoPauta evento : repository.buscarEventosRecentes(janelaMs)) {
+				if (aplicados.putIfAbsent(evento.getIdEvento(), agora) != null
+						|| lideranca.getIdNo().equals(evento.getIdNo())) {
+					continue;
+				}
+				StatusPauta status = StatusPauta.valueOf(evento.getStatusPauta());
+				votacaoService.aplicarAlteracaoRemota(evento.getIdPauta(), status);
+				eventos.publishEvent(new PautaAlteradaEvent(evento.getIdPauta(), status, false));
+			}
+			limparEventosAntigos(agora);
+		} catch (RuntimeException e) {
+			log.error("Erro ao ler eventos das outras instâncias: {}", e.getMessage(), e);
+		}
+	}
+
+	//Esquece os ids que já saíram da janela de leitura e, na instância líder, apaga os eventos antigos do banco
+	private void limparEventosAntigos(long agora) {
+		long janelaNanos = TimeUnit.MILLISECONDS.toNanos(janelaMs);
+		if (agora - ultimaLimpezaNanos < janelaNanos) {
+			return;
+		}
+		ultimaLimpezaNanos = agora;
+		for (Iterator<Long> it = aplicados.values().iterator(); it.hasNext();) {
+			if (agora - it.next() > 2 * janelaNanos) {
+				it.remove();
+			}
+		}
+		if (lideranca.isLider()) {
+			repository.apagarEventosAnteriores(2 * janelaMs);
+		}
+	}
+}
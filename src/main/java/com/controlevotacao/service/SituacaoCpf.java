@@ -0,0 +1,8 @@
+package com.controlevotacao.service;
+
+//Resposta do serviço externo de validação de cpf
+public enum SituacaoCpf {
+	HABILITADO,     // ABLE_TO_VOTE
+	NAO_HABILITADO, // UNABLE_TO_VOTE
+	INVALIDO        // 404 do serviço
+}
@@ -0,0 +1,143 @@
+package com.controlevotacao.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.controlevotacao.client.ValidacaoCpfClient;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+//Consulta o serviço externo de validação de cpf com cache na frente.
+//Cada situação tem TTL próprio (inclusive as negativas, para não repetir chamadas de cpfs já rejeitados)
+//e consultas simultâneas do mesmo cpf compartilham uma única chamada remota. Falhas não são guardadas,
+//nem a situação assumida pela política de falha do cliente.
+@Service
+public class ValidacaoCpfService {
+
+	private final ValidacaoCpfClient validacaoCpfClient;
+	private final AsyncCache<Long, SituacaoCpf> cache;
+	private final MetricasVotacao metricas;
+
+	public ValidacaoCpfService(ValidacaoCpfClient validacaoCpfClient,
+			                   MetricasVotacao metricas,
+			                   MeterRegistry registry,
+			                   @Value("${votacao.cpf.cache.tamanho-maximo:100000}") long tamanhoMaximo,
+			                   @Value("${votacao.cpf.cache.ttl-habilitado:10m}") Duration ttlHabilitado,
+			                   @Value("${votacao.cpf.cache.ttl-nao-habilitado:1m}") Duration ttlNaoHabilitado,
+			                   @Value("${votacao.cpf.cache.ttl-invalido:1h}") Duration ttlInvalido) {
+		this.validacaoCpfClient = validacaoCpfClient;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfter(new ExpiracaoPorSituacao(ttlHabilitado, ttlNaoHabilitado, ttlInvalido))
+				.recordStats()
+				.buildAsync();
+		this.metricas = metricas;
+		// acertos, faltas e remoções do cache e o estado do circuito também ficam no /actuator/prometheus
+		CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "validacao-cpf", Tags.empty());
+		Gauge.builder("votacao.cpf.circuito.aberto", validacaoCpfClient, c -> c.isCircuitoAberto() ? 1 : 0)
+				.description("1 enquanto o circuito do serviço de validação de cpf estiver aberto")
+				.register(registry);
+	}
+
+	//Retorna a situação do cpf, consultando o serviço externo apenas se ela não estiver no cache.
+	//Bloqueia no máximo pelos timeouts do cliente.
+	public SituacaoCpf validar(long cpf) {
+		return validarAsync(cpf).join();
+	}
+
+	//Versão assíncrona: o futuro conclui na thread de I/O do cliente quando a resposta chega
+	public CompletableFuture<SituacaoCpf> validarAsync(long cpf) {
+		long inicio = System.nanoTime();
+		CompletableFuture<SituacaoCpf> consulta = cache.get(cpf, (chave, executor) -> consultar(chave));
+		return consulta
+				.whenComplete((situacao, erro) -> metricas.registrarEtapa(MetricasVotacao.Etapa.VALIDACAO_CPF, inicio))
+				.handle((situacao, erro) -> {
+					if (situacao != null) {
+						return situacao;
+					}
+					if (erro == null && consulta instanceof ConsultaCpf) {
+						erro = ((ConsultaCpf) consulta).erro;
+					}
+					return validacaoCpfClient.situacaoSemResposta(erro);
+				});
+	}
+
+	//Carga do cache: a falha da chamada remota conclui o futuro com null, que o Caffeine tira do cache e conta como
+	//falha de carga sem registrar o stack trace; o erro fica no próprio futuro para todos que esperam por ele
+	private CompletableFuture<SituacaoCpf> consultar(long cpf) {
+		ConsultaCpf consulta = new ConsultaCpf();
+		validacaoCpfClient.consultar(cpf).whenComplete((situacao, erro) -> {
+			if (erro != null) {
+				consulta.erro = erro;
+				consulta.complete(null);
+			} else {
+				consulta.complete(situacao);
+			}
+		});
+		return consulta;
+	}
+
+	//Estatísticas de acerto do cache
+	public Map<String, Object> obterEstatisticas() {
+		CacheStats stats = cache.synchronous().stats();
+		Map<String, Object> estatisticas = new LinkedHashMap<>();
+		estatisticas.put("tamanho", cache.synchronous().estimatedSize());
+		estatisticas.put("acertos", stats.hitCount());
+		estatisticas.put("faltas", stats.missCount());
+		estatisticas.put("taxaAcerto", stats.hitRate());
+		estatisticas.put("consultasComFalha", stats.loadFailureCount());
+		estatisticas.put("remocoes", stats.evictionCount());
+		estatisticas.put("circuitoAberto", validacaoCpfClient.isCircuitoAberto());
+		return estatisticas;
+	}
+
+	private static final class ConsultaCpf extends CompletableFuture<SituacaoCpf> {
+		private volatile Throwable erro;
+	}
+
+	private static class ExpiracaoPorSituacao implements Expiry<Long, SituacaoCpf> {
+		private final long habilitadoNanos;
+		private final long naoHabilitadoNanos;
+		private final long invalidoNanos;
+
+		ExpiracaoPorSituacao(Duration habilitado, Duration naoHabilitado, Duration invalido) {
+			this.habilitadoNanos = habilitado.toNanos();
+			this.naoHabilitadoNanos = naoHabilitado.toNanos();
+			this.invalidoNanos = invalido.toNanos();
+		}
+
+		@Override
+		public long expireAfterCreate(Long cpf, SituacaoCpf situacao, long agora) {
+			switch (situacao) {
+			case HABILITADO:
+				return habilitadoNanos;
+			case NAO_HABILITADO:
+				return naoHabilitadoNanos;
+			default:
+				return invalidoNanos;
+			}
+		}
+
+		@Override
+		public long expireAfterUpdate(Long cpf, SituacaoCpf situacao, long agora, long duracaoAtual) {
+			return expireAfterCreate(cpf, situacao, agora);
+		}
+
+		@Override
+		public long expireAfterRead(Long cpf, SituacaoCpf situacao, long agora, long duracaoAtual) {
+			return duracaoAtual;
+		}
+	}
+}
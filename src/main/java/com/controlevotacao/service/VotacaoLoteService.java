@@ -0,0 +1,228 @@
+package com.controlevotacao.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.util.CpfCodec;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+//Recebe votos em lote no formato NDJSON ({"idPauta": "...", "codCpf": "...", "voto": "SIM"} por linha) e devolve uma linha
+//de resultado por voto. Cada voto vai para a sessão da sua pauta; sem idPauta, para a única sessão aberta.
+//Os registros são lidos um a um do corpo da requisição e no máximo "janela" votos ficam pendentes ao mesmo tempo,
+//então a memória usada não depende do tamanho do envio. As validações de cpf dos votos da janela correm em paralelo;
+//o registro segue a ordem de chegada, com as mesmas regras de registrarVoto, e os resultados saem na mesma ordem.
+@Service
+public class VotacaoLoteService {
+
+	private static final TypeReference<Map<String, String>> TIPO_REGISTRO = new TypeReference<Map<String, String>>() {};
+
+	private final VotacaoService votacaoService;
+	private final ValidacaoCpfService validacaoCpfService;
+	private final MetricasVotacao metricas;
+	private final ObjectMapper objectMapper;
+	private final ObjectReader leitorRegistros;
+	private final int janela;
+	Logger log = LoggerFactory.getLogger(VotacaoLoteService.class);
+
+	public VotacaoLoteService(VotacaoService votacaoService,
+			                  ValidacaoCpfService validacaoCpfService,
+			                  MetricasVotacao metricas,
+			                  ObjectMapper objectMapper,
+			                  @Value("${votacao.lote.janela:32}") int janela) {
+		this.votacaoService = votacaoService;
+		this.validacaoCpfService = validacaoCpfService;
+		this.metricas = metricas;
+		this.objectMapper = objectMapper;
+		this.leitorRegistros = objectMapper.readerFor(TIPO_REGISTRO);
+		this.janela = janela;
+	}
+
+	//Processa os votos lidos da entrada e escreve os resultados na saída à medida que ficam prontos
+	public void votarLote(InputStream entrada, OutputStream saida) throws IOException {
+		JsonGenerator gerador = objectMapper.getFactory().createGenerator(saida);
+		gerador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		// cada resultado termina com quebra de linha própria, sem o espaço que o Jackson põe entre valores
+		gerador.setRootValueSeparator(null);
+		Execucao execucao = new Execucao(gerador);
+
+		long linha = 0;
+		try (MappingIterator<Map<String, String>> registros = leitorRegistros.readValues(entrada)) {
+			while (true) {
+				Map<String, String> registro;
+				try {
+					if (!registros.hasNextValue()) {
+						break;
+					}
+					linha++;
+					registro = registros.nextValue();
+				} catch (JsonProcessingException e) {
+					// não há como achar o início do próximo registro: conclui os pendentes e encerra
+					log.warn("NDJSON inválido na linha {} do lote: {}", linha, e.getOriginalMessage());
+					execucao.concluirTodos();
+					execucao.escrever(linha, null, "JSON_INVALIDO");
+					break;
+				}
+				execucao.adicionar(linha, registro);
+			}
+		}
+		execucao.concluirTodos();
+		gerador.flush();
+	}
+
+	//Estado de um envio: votos aguardando registro e votos aguardando a escrita do resultado, ambos na ordem de chegada
+	private final class Execucao {
+		private final JsonGenerator gerador;
+		private final ArrayDeque<Pendente> aRegistrar = new ArrayDeque<>();
+		private final ArrayDeque<Pendente> aEscrever = new ArrayDeque<>();
+
+		Execucao(JsonGenerator gerador) {
+			this.gerador = gerador;
+		}
+
+		void adicionar(long linha, Map<String, String> registro) throws IOException {
+			Pendente pendente = new Pendente(linha, registro != null ? registro.get("codCpf") : null);
+			preparar(pendente, registro);
+			aEscrever.add(pendente);
+			if (pendente.resultado == null) {
+				aRegistrar.add(pendente);
+			}
+			avancar();
+			while (aEscrever.size() >= janela) {
+				concluirPrimeiro();
+			}
+		}
+
+		void concluirTodos() throws IOException {
+			while (!aEscrever.isEmpty()) {
+				concluirPrimeiro();
+			}
+		}
+
+		//Faz as conferências locais e dispara a validação do cpf; votos recusados já saem com o resultado
+		private void preparar(Pendente pendente, Map<String, String> registro) {
+			String idPauta = registro != null ? registro.get("idPauta") : null;
+			SessaoAberta sessao = votacaoService.obterSessaoAtiva(idPauta);
+			if (sessao == null) {
+				pendente.resultado = recusado(votacaoService.motivoSemSessao(idPauta));
+				return;
+			}
+			TipoVoto tipoVoto = tipoVoto(registro != null ? registro.get("voto") : null);
+			if (tipoVoto == null) {
+				pendente.resultado = recusado("VOTO_INVALIDO");
+				return;
+			}
+			long numeroCpf = CpfCodec.paraLong(pendente.codCpf);
+			if (numeroCpf == CpfCodec.INVALIDO) {
+				pendente.resultado = recusado("CPF_INVALIDO");
+				return;
+			}
+			pendente.voto = new PautaVotacao(sessao.getNumPauta(), numeroCpf, tipoVoto);
+			pendente.validacao = validacaoCpfService.validarAsync(numeroCpf);
+		}
+
+		//Registra, na ordem de chegada, os votos cuja validação já terminou e escreve os resultados já prontos
+		private void avancar() throws IOException {
+			while (!aRegistrar.isEmpty() && aRegistrar.peek().validacao.isDone()) {
+				registrar(aRegistrar.poll());
+			}
+			while (!aEscrever.isEmpty() && aEscrever.peek().resultado != null && aEscrever.peek().resultado.isDone()) {
+				Pendente pronto = aEscrever.poll();
+				escrever(pronto.linha, pronto.codCpf, pronto.resultado.join());
+			}
+		}
+
+		//Aguarda o voto mais antigo, registrando-o se preciso, e escreve o resultado dele
+		private void concluirPrimeiro() throws IOException {
+			Pendente primeiro = aEscrever.peek();
+			boolean vaiEsperar = primeiro.resultado == null ? !primeiro.validacao.isDone() : !primeiro.resultado.isDone();
+			if (vaiEsperar) {
+				// o cliente recebe o que já está pronto antes de o servidor parar para esperar
+				gerador.flush();
+			}
+			if (primeiro.resultado == null) {
+				// como o registro segue a ordem de chegada, o mais antigo a escrever é também o primeiro a registrar
+				registrar(aRegistrar.poll());
+			}
+			aEscrever.poll();
+			escrever(primeiro.linha, primeiro.codCpf, primeiro.resultado.join());
+			avancar();
+		}
+
+		private void registrar(Pendente pendente) {
+			SituacaoCpf situacao;
+			try {
+				situacao = pendente.validacao.join();
+			} catch (Exception e) {
+				log.error("Erro ao validar CPF {}: {}", pendente.codCpf, e.getMessage());
+				pendente.resultado = recusado("ERRO_VALIDACAO_CPF");
+				return;
+			}
+			if (situacao == SituacaoCpf.INVALIDO) {
+				pendente.resultado = recusado("CPF_INVALIDO");
+			} else if (situacao == SituacaoCpf.NAO_HABILITADO) {
+				pendente.resultado = recusado("CPF_NAO_HABILITADO");
+			} else {
+				pendente.resultado = votacaoService.registrarVotoAsync(pendente.voto);
+			}
+		}
+
+		void escrever(long linha, String codCpf, String resultado) throws IOException {
+			gerador.writeStartObject();
+			gerador.writeNumberField("linha", linha);
+			if (codCpf != null) {
+				gerador.writeStringField("codCpf", codCpf);
+			}
+			gerador.writeStringField("resultado", resultado);
+			gerador.writeEndObject();
+			gerador.writeRaw('\n');
+		}
+	}
+
+	//Resultado de um voto recusado antes do registro, contado nas métricas como os votos individuais
+	private CompletableFuture<String> recusado(String resultado) {
+		metricas.contarResultado(resultado);
+		return CompletableFuture.completedFuture(resultado);
+	}
+
+	private static TipoVoto tipoVoto(String voto) {
+		if (voto == null) {
+			return null;
+		}
+		try {
+			return TipoVoto.valueOf(voto.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	//Um voto do lote; resultado fica null enquanto o voto aguarda a validação do cpf para ser registrado
+	private static final class Pendente {
+		private final long linha;
+		private final String codCpf;
+		private PautaVotacao voto;
+		private CompletableFuture<SituacaoCpf> validacao;
+		private CompletableFuture<String> resultado;
+
+		Pendente(long linha, String codCpf) {
+			this.linha = linha;
+			this.codCpf = codCpf;
+		}
+	}
+}
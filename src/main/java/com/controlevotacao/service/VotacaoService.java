@@ -1,46 +1,67 @@
 package com.controlevotacao.service;
 
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 
 import com.controlevotacao.model.Pauta;
+import com.controlevotacao.model.PautaResultado;
 import com.controlevotacao.model.PautaVotacao;
-import com.controlevotacao.model.PautaVotacaoId;
+import com.controlevotacao.model.StatusPauta;
+import com.controlevotacao.model.TipoVoto;
 import com.controlevotacao.repository.PautaRepository;
 import com.controlevotacao.repository.PautaVotacaoRepository;
+import com.controlevotacao.util.CpfCodec;
 
 @Service
 public class VotacaoService {
 
 	private final PautaRepository pautaRepository;
 	private final PautaVotacaoRepository pautaVotacaoRepository;
-	private final TaskScheduler scheduler;
-	private final RestTemplate restTemplate = new RestTemplate();
+	private final AgendaFechamentoSessoes agendaFechamento;
+	private final RegistroSessao registroSessao;
+	private final PlacarVotos placarVotos;
+	private final GravadorVotos gravadorVotos;
+	private final ValidacaoCpfService validacaoCpfService;
+	private final MetricasVotacao metricas;
+	private final ApplicationEventPublisher eventos;
+	private final ResultadoPautaService resultadoPautaService;
+	private final LiderancaCluster lideranca;
+	private final ThreadPoolExecutor executorGravacao;
 	Logger log = LoggerFactory.getLogger(VotacaoService.class);
-	
-	//obtem o serviço externo de validação do cpf
-	@Value("${app.url.valida.cpf}")
-    private String urlValidaCpf;
+
+	// tempo máximo que o fechamento espera a gravação dos votos aceitos antes do fim do prazo
+	private static final long ESPERA_GRAVACOES_MS = 10000;
+
+	// com várias instâncias, tempo após o fim do prazo antes de fechar, para os votos aceitos nas outras serem gravados
+	private final long carenciaFechamentoMs;
 	
 	// injeta a propriedade do application.properties
 	// se não existir, assume 1 minuto como default
@@ -49,10 +70,98 @@ public class VotacaoService {
 
 	public VotacaoService(PautaRepository pautaRepository,
 			              PautaVotacaoRepository pautaVotacaoRepository,
-			              TaskScheduler scheduler) {
+			              AgendaFechamentoSessoes agendaFechamento,
+			              RegistroSessao registroSessao,
+			              PlacarVotos placarVotos,
+			              GravadorVotos gravadorVotos,
+			              ValidacaoCpfService validacaoCpfService,
+			              MetricasVotacao metricas,
+			              ApplicationEventPublisher eventos,
+			              ResultadoPautaService resultadoPautaService,
+			              LiderancaCluster lideranca,
+			              @Value("${votacao.cluster.carencia-fechamento-ms:2000}") long carenciaFechamentoMs,
+			              @Value("${votacao.gravacao.executor.threads:10}") int threadsGravacao,
+			              @Value("${votacao.gravacao.executor.capacidade-fila:1000}") int capacidadeFilaGravacao) {
 		this.pautaRepository = pautaRepository;
 		this.pautaVotacaoRepository = pautaVotacaoRepository;
-		this.scheduler = scheduler;
+		this.agendaFechamento = agendaFechamento;
+		this.registroSessao = registroSessao;
+		this.placarVotos = placarVotos;
+		this.gravadorVotos = gravadorVotos;
+		this.validacaoCpfService = validacaoCpfService;
+		this.metricas = metricas;
+		this.eventos = eventos;
+		this.resultadoPautaService = resultadoPautaService;
+		this.lideranca = lideranca;
+		this.carenciaFechamentoMs = lideranca.isHabilitado() ? carenciaFechamentoMs : 0;
+		// executor limitado da etapa de gravação dos votos assíncronos: com a fila cheia o voto é recusado na hora
+		this.executorGravacao = new ThreadPoolExecutor(threadsGravacao, threadsGravacao, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(capacidadeFilaGravacao), new CustomizableThreadFactory("gravacao-voto-"),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	//Reconstrói o estado em memória a partir do banco na subida da aplicação: as sessões abertas com os cpfs
+	//que já votaram nelas, o placar delas com a contagem dos votos já gravados e a agenda de fechamento, em que
+	//as sessões que venceram com o servidor parado fecham assim que ela inicia. Pautas fechadas não são contadas:
+	//o resultado delas está em pauta_resultado. Com várias instâncias, só a líder fecha as sessões no banco.
+	@PostConstruct
+	public void carregarEstado() {
+		registroSessao.limpar();
+		placarVotos.limpar();
+		agendaFechamento.limpar();
+		for (Pauta p : pautaRepository.findAllByStatusPauta(StatusPauta.ABERTA)) {
+			carregarSessao(p);
+		}
+		agendaFechamento.iniciar(this::fecharSessao);
+		lideranca.iniciar(this::agendarSessoesAbertas);
+	}
+
+	//Registra a sessão aberta da pauta, se ainda não estiver registrada, com os cpfs que já votaram nela,
+	//o placar dos votos já gravados e o fechamento agendado
+	private synchronized SessaoAberta carregarSessao(Pauta p) {
+		SessaoAberta sessao = registroSessao.obter(p.getIdPauta());
+		if (sessao != null || p.getFimSessao() == null) {
+			return sessao;
+		}
+		sessao = registroSessao.abrir(p);
+		pautaVotacaoRepository.percorrerCpfsPorPauta(p.getNumPauta(), sessao.getCpfsVotantes()::adicionar);
+		long[] contagem = pautaVotacaoRepository.contarVotosPorVoto(p.getNumPauta());
+		placarVotos.carregar(p.getIdPauta(), contagem[TipoVoto.SIM.getCodigo()], contagem[TipoVoto.NAO.getCodigo()]);
+		agendaFechamento.agendar(p.getIdPauta(), sessao.getFimSessaoMillis() + carenciaFechamentoMs);
+		return sessao;
+	}
+
+	//Ao assumir o fechamento das sessões, carrega as abertas no banco que não estão no registro, como as que a líder
+	//anterior não chegou a fechar e esta instância já tinha removido; as que estão no registro já têm fechamento agendado
+	private void agendarSessoesAbertas() {
+		for (Pauta p : pautaRepository.findAllByStatusPauta(StatusPauta.ABERTA)) {
+			carregarSessao(p);
+		}
+	}
+
+	//Aplica a alteração de pauta feita por outra instância: carrega do banco a sessão aberta lá ou remove a fechada
+	public void aplicarAlteracaoRemota(String idPauta, StatusPauta statusPauta) {
+		if (statusPauta == StatusPauta.ABERTA) {
+			pautaRepository.findById(idPauta)
+					.filter(p -> p.getStatusPauta() == StatusPauta.ABERTA)
+					.ifPresent(this::carregarSessao);
+		} else if (statusPauta == StatusPauta.FECHADA) {
+			removerSessao(idPauta);
+		}
+	}
+
+	//Remove a sessão fechada do registro em memória junto com o placar dela
+	private void removerSessao(String idPauta) {
+		registroSessao.fechar(idPauta);
+		placarVotos.remover(idPauta);
+	}
+
+	//Recarrega do banco o placar das sessões abertas, que com várias instâncias também recebem votos pelas outras
+	public void recarregarPlacares() {
+		for (SessaoAberta sessao : registroSessao.listar()) {
+			long[] contagem = pautaVotacaoRepository.contarVotosPorVoto(sessao.getNumPauta());
+			placarVotos.carregar(sessao.getIdPauta(), contagem[TipoVoto.SIM.getCodigo()], contagem[TipoVoto.NAO.getCodigo()]);
+		}
 	}
 
 	//Cria pautas de votação com status Pendente
@@ -65,10 +174,14 @@ public class VotacaoService {
 
 	        Pauta pauta = new Pauta();
 	        pauta.setIdPauta(idPauta);
-	        pauta.setStatusPauta("Pendente");
+	        pauta.setStatusPauta(StatusPauta.PENDENTE);
 	        pautaRepository.save(pauta);
+	        eventos.publishEvent(new PautaAlteradaEvent(idPauta, StatusPauta.PENDENTE));
 
 	        return "CRIADA";
+	    } catch (DataIntegrityViolationException e) {
+	        // criada ao mesmo tempo por outra requisição ou outra instância
+	        return "EXISTENTE";
 	    } catch (Exception e) {
 	        // Log detalhado da exceção
 	        Logger log = LoggerFactory.getLogger(VotacaoService.class);
@@ -79,103 +192,149 @@ public class VotacaoService {
 	    }
 	}
 
-	public List<Pauta> listarPautas() {
-		return pautaRepository.findAll();
+	//Lista as pautas em ordem de id, uma página por vez: apos é o último id da página anterior (null na primeira)
+	public List<Pauta> listarPautas(String apos, int tamanhoPagina) {
+		PageRequest pagina = PageRequest.of(0, tamanhoPagina);
+		return apos == null ? pautaRepository.findAllByOrderByIdPauta(pagina)
+				: pautaRepository.findByIdPautaGreaterThanOrderByIdPauta(apos, pagina);
 	}
 
 	//Grava o voto sim ou nao se o cpf ainda não tiver votado na pauta
 	public String registrarVoto(PautaVotacao voto) {
-		Optional<Pauta> pautaOpt = pautaRepository.findById(voto.getId().getIdPauta());
-		if (!pautaOpt.isPresent()) {
-			return "NAO_ENCONTRADA";
+		try {
+			// no modo em lote a requisição aguarda aqui até o commit do lote que contém o voto
+			return registrarVotoAsync(voto).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "ERRO";
+		} catch (ExecutionException e) {
+			return "ERRO";
 		}
+	}
 
-		Pauta pauta = pautaOpt.get();
-		if (!"Aberta".equalsIgnoreCase(pauta.getStatusPauta())) {
-			return "FECHADA";
+	//Mesmas regras de registrarVoto sem aguardar a gravação: o futuro conclui com o código do resultado.
+	//As conferências em memória são feitas na thread chamadora, na ordem das chamadas.
+	public CompletableFuture<String> registrarVotoAsync(PautaVotacao voto) {
+		long numPauta = voto.getNumPauta();
+		SessaoAberta sessao = registroSessao.obterPorNumero(numPauta);
+		if (sessao == null) {
+			// a pauta não tem sessão aberta: só consulta o banco para diferenciar pauta inexistente de fechada
+			return concluido(pautaRepository.existsByNumPauta(numPauta) ? "FECHADA" : "NAO_ENCONTRADA");
+		}
+		String idPauta = sessao.getIdPauta();
+
+		// a gravação é contada antes de conferir o prazo: o fechamento espera os votos aceitos antes de apurar o resultado
+		sessao.iniciarGravacao();
+		// o prazo é conferido em memória para parar de aceitar votos exatamente no fim da sessão
+		if (!sessao.aceitaVotos(System.currentTimeMillis())) {
+			sessao.concluirGravacao();
+			return concluido("FECHADA");
 		}
 
-		// Verifica se o CPF já votou nessa pauta
-		Optional<PautaVotacao> votoExistente = pautaVotacaoRepository
-				.findByIdIdPautaAndIdCodCpf(voto.getId().getIdPauta(), voto.getId().getCodCpf());
-		if (votoExistente.isPresent()) {
-			return "CPF_DUPLICADO";
+		// Verifica em memória se o CPF já votou nessa pauta; a chave primária continua sendo a garantia final
+		long cpf = voto.getCodCpf();
+		long inicio = System.nanoTime();
+		boolean novo = sessao.getCpfsVotantes().adicionar(cpf);
+		metricas.registrarEtapa(MetricasVotacao.Etapa.DUPLICIDADE, inicio);
+		if (!novo) {
+			sessao.concluirGravacao();
+			return concluido("CPF_DUPLICADO");
 		}
 
-		pautaVotacaoRepository.save(voto);
-		return "REGISTRADO";
+		long inicioGravacao = System.nanoTime();
+		CompletableFuture<String> gravacao;
+		try {
+			gravacao = gravadorVotos.gravar(voto);
+		} catch (RuntimeException e) {
+			gravacao = new CompletableFuture<>();
+			gravacao.completeExceptionally(e);
+		}
+		return gravacao.handle((resultado, erro) -> {
+			sessao.concluirGravacao();
+			metricas.registrarEtapa(MetricasVotacao.Etapa.GRAVACAO, inicioGravacao);
+			if (erro != null) {
+				Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+				log.error("Erro ao gravar voto na pauta {}: {}", idPauta, causa.getMessage(), causa);
+				// o voto não foi gravado: o cpf sai do conjunto para poder votar novamente
+				liberarCpf(sessao, cpf);
+				metricas.contarResultado("ERRO");
+				return "ERRO";
+			}
+			if ("REGISTRADO".equals(resultado)) {
+				placarVotos.incrementar(idPauta, voto.getVoto());
+			}
+			metricas.contarResultado(resultado);
+			return resultado;
+		});
 	}
 
-	public List<PautaVotacao> listarVotosPorPauta(String idPauta) {
-		return pautaVotacaoRepository.findByIdIdPauta(idPauta);
+	private CompletableFuture<String> concluido(String resultado) {
+		metricas.contarResultado(resultado);
+		return CompletableFuture.completedFuture(resultado);
 	}
 
-	public String buscarPautaAberta() {
-		return pautaRepository.findByStatusPauta("Aberta").map(Pauta::getIdPauta).orElse(null);
-
+	private void liberarCpf(SessaoAberta sessao, long cpf) {
+		sessao.getCpfsVotantes().remover(cpf);
 	}
 
-	// Busca o id da pauta pendente de abertura
-	public String buscarIdPautaAberta() {
-	    try {
-	        return pautaRepository.findByStatusPauta("Aberta")
-	                              .map(Pauta::getIdPauta)
-	                              .orElse(null);
-	    } catch (Exception e) {
-	        Logger log = LoggerFactory.getLogger(VotacaoService.class);
-	        log.error("Erro ao buscar pauta aberta: {}", e.getMessage(), e);
+	public List<PautaVotacao> listarVotosPorPauta(String idPauta) {
+		return pautaRepository.findById(idPauta)
+				.map(pauta -> pautaVotacaoRepository.buscarPorPauta(pauta.getNumPauta()))
+				.orElse(Collections.<PautaVotacao>emptyList());
+	}
 
-	        // Retorna um código especial para o controller identificar
-	        return "ERRO";
-	    }
+	// Busca no registro em memória os ids das pautas com sessão aberta, em ordem de id
+	public List<String> listarPautasAbertas() {
+		List<String> abertas = new ArrayList<>();
+		for (SessaoAberta sessao : registroSessao.listarAtivas()) {
+			abertas.add(sessao.getIdPauta());
+		}
+		Collections.sort(abertas);
+		return abertas;
 	}
 	
-	public List<Pauta> buscarPautasPendentes() {
-	    return pautaRepository.findAllByStatusPauta("Pendente");
+	//Página das pautas pendentes seguinte ao id apos (null na primeira página)
+	public List<Pauta> buscarPautasPendentes(String apos, int tamanhoPagina) {
+	    return buscarPaginaPorStatus(StatusPauta.PENDENTE, apos, tamanhoPagina);
 	}
 	
-	public List<Pauta> buscarPautasFechadas() {
-		return pautaRepository.findAllByStatusPauta("Fechada");
+	//Página das pautas fechadas seguinte ao id apos (null na primeira página)
+	public List<Pauta> buscarPautasFechadas(String apos, int tamanhoPagina) {
+		return buscarPaginaPorStatus(StatusPauta.FECHADA, apos, tamanhoPagina);
+	}
+
+	private List<Pauta> buscarPaginaPorStatus(StatusPauta status, String apos, int tamanhoPagina) {
+		PageRequest pagina = PageRequest.of(0, tamanhoPagina);
+		return apos == null ? pautaRepository.buscarPaginaPorStatus(status, pagina)
+				: pautaRepository.buscarPaginaPorStatus(status, apos, pagina);
 	}
 	
 	//Abre a sesão para votação e será fechada automaticamente após o tempo em minutos definido no application.properties
 	public String abrirSessao(String idPauta, Integer duracaoMinutos) {
-	    try {
-	        Optional<Pauta> pautaOpt = pautaRepository.findById(idPauta);
-	        if (!pautaOpt.isPresent()) {
-	            return "NAO_ENCONTRADA";
-	        }
-
-	        // Se já existe alguma pauta aberta, não pode abrir nova sessão
-	        Optional<Pauta> pautaAberta = pautaRepository.findByStatusPauta("Aberta");
-	        if (pautaAberta.isPresent()) {
-	            return "JA_ABERTA";
-	        }
-
-	        Pauta pauta = pautaOpt.get();
-
-	        // Se já estiver fechada, não pode abrir novamente
-	        if ("Fechada".equalsIgnoreCase(pauta.getStatusPauta())) {
-	            return "FECHADA";
-	        }
+	    long inicio = System.nanoTime();
+	    String resultado = executarAberturaSessao(idPauta, duracaoMinutos);
+	    metricas.registrarAberturaSessao(inicio, resultado);
+	    return resultado;
+	}
 
+	private String executarAberturaSessao(String idPauta, Integer duracaoMinutos) {
+	    try {
 	        // Define duração: se não informado, usa valor default
 	        int duracao = (duracaoMinutos != null) ? duracaoMinutos : duracaoDefault;
+	        LocalDateTime inicioSessao = LocalDateTime.now();
+	        LocalDateTime fimSessao = inicioSessao.plusMinutes(duracao);
 
-	        pauta.setStatusPauta("Aberta");
-	        pauta.setInicioSessao(LocalDateTime.now());
-	        pauta.setFimSessao(LocalDateTime.now().plusMinutes(duracao));
-	        pautaRepository.save(pauta);
+	        // a abertura é um único UPDATE condicionado à pauta estar Pendente; o motivo da recusa só é lido se ela falhar.
+	        // Sessões de pautas diferentes são independentes e podem ficar abertas ao mesmo tempo.
+	        if (pautaRepository.abrirSessao(idPauta, inicioSessao, fimSessao, StatusPauta.PENDENTE, StatusPauta.ABERTA) != 1) {
+	            return motivoRecusaAbertura(idPauta);
+	        }
 
-	        // agenda fechamento automático
-	        scheduler.schedule(() -> {
-	            try {
-	                pauta.setStatusPauta("Fechada");
-	                pautaRepository.save(pauta);
-	            } catch (Exception e) {
-	                log.error("Erro ao fechar pauta automaticamente: {}", e.getMessage(), e);
-	            }
-	        }, Date.from(pauta.getFimSessao().atZone(ZoneId.systemDefault()).toInstant()));
+	        Pauta pauta = pautaRepository.findById(idPauta)
+	                .orElseThrow(() -> new IllegalStateException("Pauta aberta não encontrada: " + idPauta));
+	        // registra a sessão e agenda o fechamento automático
+	        carregarSessao(pauta);
+	        eventos.publishEvent(new PautaAlteradaEvent(idPauta, StatusPauta.ABERTA));
 
 	        return "ABERTA";
 	    } catch (Exception e) {
@@ -184,9 +343,26 @@ public class VotacaoService {
 	    }
 	}
 
+	//Código de retorno da abertura recusada, conforme a situação atual da pauta
+	private String motivoRecusaAbertura(String idPauta) {
+	    Optional<Pauta> pautaOpt = pautaRepository.findById(idPauta);
+	    if (!pautaOpt.isPresent()) {
+	        return "NAO_ENCONTRADA";
+	    }
+	    // Se já estiver fechada, não pode abrir novamente
+	    if (pautaOpt.get().getStatusPauta() == StatusPauta.FECHADA) {
+	        return "FECHADA";
+	    }
+	    return "JA_ABERTA";
+	}
+
 	//Encaminha o voto e obtem os retornos da gravação do voto para retornar aa aplicação cliente
 	public ResponseEntity<Map<String, String>> processarVoto(PautaVotacao voto) {
-		String resultado = registrarVoto(voto);
+		return respostaVoto(registrarVoto(voto));
+	}
+
+	//Converte o código de resultado da gravação na resposta do voto
+	private ResponseEntity<Map<String, String>> respostaVoto(String resultado) {
 		Map<String, String> resposta = new HashMap<>();
 		
 		switch (resultado) {
@@ -210,32 +386,27 @@ public class VotacaoService {
 
 	//Gera cpfs sem pontos nem traços
 	public String gerarCpfAleatorio() {
-	    Random random = new Random();
-	    int n1 = random.nextInt(10);
-	    int n2 = random.nextInt(10);
-	    int n3 = random.nextInt(10);
-	    int n4 = random.nextInt(10);
-	    int n5 = random.nextInt(10);
-	    int n6 = random.nextInt(10);
-	    int n7 = random.nextInt(10);
-	    int n8 = random.nextInt(10);
-	    int n9 = random.nextInt(10);
-	
-	    // Dígito 1
-	    int d1 = 11 - ((n1*10 + n2*9 + n3*8 + n4*7 + n5*6 + n6*5 + n7*4 + n8*3 + n9*2) % 11);
-	    d1 = (d1 > 9) ? 0 : d1;
-	
-	    // Dígito 2
-	    int d2 = 11 - ((n1*11 + n2*10 + n3*9 + n4*8 + n5*7 + n6*6 + n7*5 + n8*4 + n9*3 + d1*2) % 11);
-	    d2 = (d2 > 9) ? 0 : d2;
-	
 	    // Retorna apenas os números, sem pontos ou traço
-	    return String.format("%d%d%d%d%d%d%d%d%d%d%d", n1,n2,n3,n4,n5,n6,n7,n8,n9,d1,d2);
+	    return CpfCodec.paraString(CpfCodec.gerar(ThreadLocalRandom.current()));
 	}
 	
 	//obter o total de votos sim e não de uma pauta
 	public Map<String, Object> obterResultadoPauta(String idPauta) {
+	    long inicio = System.nanoTime();
+	    Map<String, Object> resultado = consultarResultadoPauta(idPauta);
+	    Object erro = resultado.get("erro");
+	    metricas.registrarConsultaResultado(inicio, erro != null ? erro.toString() : "OK");
+	    return resultado;
+	}
+
+	private Map<String, Object> consultarResultadoPauta(String idPauta) {
 	    try {
+	        // pauta fechada: o resultado gravado no fechamento, do cache ou pela chave primária
+	        Optional<PautaResultado> gravado = resultadoPautaService.obter(idPauta);
+	        if (gravado.isPresent()) {
+	            return montarResultado(gravado.get());
+	        }
+
 	        Optional<Pauta> pautaOpt = pautaRepository.findById(idPauta);
 
 	        if (!pautaOpt.isPresent()) {
@@ -246,21 +417,15 @@ public class VotacaoService {
 
 	        Pauta pauta = pautaOpt.get();
 
-	        if (!"Fechada".equalsIgnoreCase(pauta.getStatusPauta())) {
+	        if (pauta.getStatusPauta() != StatusPauta.FECHADA) {
 	            Map<String, Object> resposta = new HashMap<>();
 	            resposta.put("erro", "NAO_FECHADA");
 	            return resposta;
 	        }
 
-	        long qtdSim = pautaVotacaoRepository.countByIdIdPautaAndVoto(idPauta, "SIM");
-	        long qtdNao = pautaVotacaoRepository.countByIdIdPautaAndVoto(idPauta, "NAO");
-
-	        Map<String, Object> resposta = new LinkedHashMap<>();
-	        resposta.put("idPauta", idPauta);
-	        resposta.put("Sim", qtdSim);
-	        resposta.put("Não", qtdNao);
-
-	        return resposta;
+	        // fechada antes de os resultados serem gravados no fechamento: apura e grava uma única vez
+	        return montarResultado(resultadoPautaService.gravarResultadoAnterior(idPauta, pauta.getNumPauta(),
+	                pauta.getFimSessao() != null ? pauta.getFimSessao() : LocalDateTime.now()));
 	    } catch (Exception e) {
 	        log.error("Erro ao obter resultado da pauta {}: {}", idPauta, e.getMessage(), e);
 	        Map<String, Object> resposta = new HashMap<>();
@@ -269,72 +434,194 @@ public class VotacaoService {
 	    }
 	}
 	
-	//faz validações para permitir a votação e processa o voto
-	public ResponseEntity<Map<String, String>> votar(String cpf, String tipoVoto) {
-	    log.debug("Request recebido em /votar/{}: {}", tipoVoto.toLowerCase(), cpf);
-
-	    Map<String, String> resposta = new HashMap<>();
-	    
-	    String idPautaAberta = this.buscarIdPautaAberta();
+	//obter o total parcial de votos sim e não da sessão aberta da pauta (ou da única sessão aberta, sem pauta informada),
+	//servido direto do placar em memória
+	public Map<String, Object> obterResultadoParcial(String idPauta) {
+	    SessaoAberta sessao = obterSessaoAtiva(idPauta);
+	    if (sessao == null) {
+	        Map<String, Object> resposta = new HashMap<>();
+	        resposta.put("erro", motivoSemSessao(idPauta));
+	        return resposta;
+	    }
+	    return montarResultado(sessao.getIdPauta());
+	}
 
-	    if ("ERRO".equals(idPautaAberta)) {
-	        resposta.put("mensagem", "Erro interno ao buscar pauta aberta para votação");
-	        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(resposta);
+	//Código de recusa quando não há sessão para receber o voto: sem pauta informada, diferencia nenhuma sessão aberta
+	//de várias abertas; com pauta informada, consulta o banco para diferenciar pauta inexistente, fechada ou pendente
+	public String motivoSemSessao(String idPauta) {
+	    if (idPauta == null) {
+	        return registroSessao.listarAtivas().isEmpty() ? "SEM_PAUTA_ABERTA" : "PAUTA_NAO_INFORMADA";
+	    }
+	    Optional<Pauta> pauta = pautaRepository.findById(idPauta);
+	    if (!pauta.isPresent()) {
+	        return "NAO_ENCONTRADA";
 	    }
+	    return pauta.get().getStatusPauta() == StatusPauta.PENDENTE ? "SEM_PAUTA_ABERTA" : "FECHADA";
+	}
 
-	    if (idPautaAberta == null) {
-	        resposta.put("mensagem", "Não existe pauta aberta para votação");
-	        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(resposta);
+	//Sessão dentro do prazo que recebe o voto. Com várias instâncias, uma pauta informada que foi aberta por outra
+	//e ainda não chegou pelos eventos é carregada do banco na hora. Usado também pela votação em lote
+	public SessaoAberta obterSessaoAtiva(String idPauta) {
+	    SessaoAberta sessao = registroSessao.obterAtiva(idPauta);
+	    if (sessao == null && idPauta != null && lideranca.isHabilitado() && registroSessao.obter(idPauta) == null) {
+	        Optional<Pauta> pauta = pautaRepository.findById(idPauta);
+	        if (pauta.isPresent() && pauta.get().getStatusPauta() == StatusPauta.ABERTA) {
+	            carregarSessao(pauta.get());
+	            sessao = registroSessao.obterAtiva(idPauta);
+	        }
 	    }
+	    return sessao;
+	}
+
+	private Map<String, Object> montarResultado(PautaResultado resultado) {
+	    Map<String, Object> resposta = new LinkedHashMap<>();
+	    resposta.put("idPauta", resultado.getIdPauta());
+	    resposta.put("Sim", resultado.getVotosSim());
+	    resposta.put("Não", resultado.getVotosNao());
+	    return resposta;
+	}
 
-	    // Monta a URL a partir da propriedade e chama o serviço de validação do cpf
-	    String url = urlValidaCpf + cpf;
+	private Map<String, Object> montarResultado(String idPauta) {
+	    PlacarVotos.Placar placar = placarVotos.obter(idPauta);
 
-	    ResponseEntity<Map<String, String>> response;
-	    try {
-	        response = restTemplate.exchange(
-	            url,
-	            HttpMethod.GET,
-	            null,
-	            new ParameterizedTypeReference<Map<String, String>>() {}
-	        );
-	    } catch (HttpClientErrorException.NotFound e) {
-	        resposta.put("mensagem", "CPF inválido");
-	        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(resposta);
-	    } catch (Exception e) {
-	        resposta.put("mensagem", "Erro ao validar CPF");
-	        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(resposta);
-	    }
+	    Map<String, Object> resposta = new LinkedHashMap<>();
+	    resposta.put("idPauta", idPauta);
+	    resposta.put("Sim", placar.getSim());
+	    resposta.put("Não", placar.getNao());
+	    return resposta;
+	}
 
-	    // Verifica o JSON retornado para saber se o cliente pode votar
-	    Map<String, String> body = response.getBody();
-	    if (body != null && body.containsKey("status")) {
-	        String status = body.get("status");
-	        if ("UNABLE_TO_VOTE".equals(status)) {
-	            resposta.put("mensagem", "Cpf não está habilitado para votar");
-	            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(resposta);
+	//faz validações para permitir a votação e processa o voto
+	public ResponseEntity<Map<String, String>> votar(String idPauta, String cpf, TipoVoto tipoVoto) {
+	    return votarAsync(idPauta, cpf, tipoVoto).join();
+	}
+
+	//Mesmas validações de votar sem prender a thread da requisição: a validação do cpf corre no cliente
+	//não bloqueante e a gravação no executor limitado de gravação; o futuro conclui com a resposta do voto.
+	//O voto vai para a sessão da pauta informada; sem pauta, para a única sessão aberta.
+	public CompletableFuture<ResponseEntity<Map<String, String>>> votarAsync(String idPauta, String cpf, TipoVoto tipoVoto) {
+	    log.debug("Request recebido em /votar/{}: pauta {}, cpf {}", tipoVoto.name().toLowerCase(), idPauta, cpf);
+
+	    long inicio = System.nanoTime();
+	    SessaoAberta sessao = obterSessaoAtiva(idPauta);
+	    metricas.registrarEtapa(MetricasVotacao.Etapa.SESSAO, inicio);
+
+	    if (sessao == null) {
+	        String motivo = motivoSemSessao(idPauta);
+	        metricas.contarResultado(motivo);
+	        switch (motivo) {
+	        case "PAUTA_NAO_INFORMADA":
+	            return respostaVoto(HttpStatus.BAD_REQUEST, "Existe mais de uma pauta aberta: informe o idPauta do voto");
+	        case "SEM_PAUTA_ABERTA":
+	            return respostaVoto(HttpStatus.NOT_FOUND, "Não existe pauta aberta para votação");
+	        default:
+	            return CompletableFuture.completedFuture(respostaVoto(motivo));
 	        }
-	        // Se for "ABLE_TO_VOTE", segue normalmente
 	    }
 
-	    // monta a entidade PautaVotacao com chave composta
-	    PautaVotacao voto = new PautaVotacao(
-	        new PautaVotacaoId(idPautaAberta, cpf),
-	        tipoVoto
-	    );
+	    // formato e dígitos verificadores são conferidos localmente, sem gastar uma chamada ao serviço externo
+	    long numeroCpf = CpfCodec.paraLong(cpf);
+	    if (numeroCpf == CpfCodec.INVALIDO) {
+	        metricas.contarResultado("CPF_INVALIDO");
+	        return respostaVoto(HttpStatus.NOT_FOUND, "CPF inválido");
+	    }
+
+	    // Verifica no serviço de validação (ou no cache dele) se o cpf pode votar
+	    return validacaoCpfService.validarAsync(numeroCpf).handle((situacao, erro) -> {
+	        if (erro != null) {
+	            Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+	            log.error("Erro ao validar CPF {}: {}", cpf, causa.getMessage());
+	            metricas.contarResultado("ERRO_VALIDACAO_CPF");
+	            return respostaVoto(HttpStatus.INTERNAL_SERVER_ERROR, "Erro ao validar CPF");
+	        }
+	        if (situacao == SituacaoCpf.INVALIDO) {
+	            metricas.contarResultado("CPF_INVALIDO");
+	            return respostaVoto(HttpStatus.NOT_FOUND, "CPF inválido");
+	        }
+	        if (situacao == SituacaoCpf.NAO_HABILITADO) {
+	            metricas.contarResultado("CPF_NAO_HABILITADO");
+	            return respostaVoto(HttpStatus.BAD_REQUEST, "Cpf não está habilitado para votar");
+	        }
+
+	        // monta a entidade PautaVotacao com a chave formada pela pauta e pelo cpf
+	        PautaVotacao voto = new PautaVotacao(sessao.getNumPauta(), numeroCpf, tipoVoto);
+	        // a gravação sai da thread de I/O do cliente: o insert (ou a espera pela fila do lote) roda no executor
+	        CompletableFuture<String> registro;
+	        try {
+	            registro = CompletableFuture.supplyAsync(() -> registrarVotoAsync(voto), executorGravacao)
+	                    .thenCompose(gravacao -> gravacao)
+	                    .exceptionally(falha -> {
+	                        log.error("Erro ao registrar voto na pauta {}: {}", sessao.getIdPauta(), falha.getMessage(), falha);
+	                        metricas.contarResultado("ERRO");
+	                        return "ERRO";
+	                    });
+	        } catch (RejectedExecutionException e) {
+	            // executor cheio: o voto não chegou a ser conferido nem gravado
+	            log.warn("Voto recusado na pauta {}: fila de gravação cheia", sessao.getIdPauta());
+	            metricas.contarResultado("ERRO");
+	            registro = CompletableFuture.completedFuture("ERRO");
+	        }
+	        return registro.thenApply(this::respostaVoto);
+	    }).thenCompose(resposta -> resposta);
+	}
 
-	    return this.processarVoto(voto);
+	private CompletableFuture<ResponseEntity<Map<String, String>>> respostaVoto(HttpStatus status, String mensagem) {
+	    Map<String, String> resposta = new HashMap<>();
+	    resposta.put("mensagem", mensagem);
+	    return CompletableFuture.completedFuture(ResponseEntity.status(status).body(resposta));
+	}
+
+	//Para de aceitar gravações e espera as que estão no executor
+	@PreDestroy
+	public void encerrarExecutorGravacao() throws InterruptedException {
+	    executorGravacao.shutdown();
+	    executorGravacao.awaitTermination(10, TimeUnit.SECONDS);
 	}
 	
-	//Peridocamente verifica se existem pautas abertas e que já expiraram porque se houver reinicio do servidor podem ficar sem o fechamento do scheduler que abriu a sessão
-	@Scheduled(fixedRate = 60000)
-	public void fecharPautasExpiradas() {
-	    List<Pauta> abertas = pautaRepository.findAllByStatusPauta("Aberta");
-	    for (Pauta p : abertas) {
-	        if (p.getFimSessao().isBefore(LocalDateTime.now())) {
-	            p.setStatusPauta("Fechada");
-	            pautaRepository.save(p);
+	//Fecha a sessão da pauta no banco, gravando o resultado, e a remove do registro em memória com o placar.
+	//Com várias instâncias, as que não são líderes só removem a sessão e o placar da própria memória.
+	//Retorna true quando não resta nada a fazer pela pauta (fechada ou inexistente); um erro no banco é propagado
+	//para a agenda tentar de novo
+	private boolean fecharSessao(String idPauta) {
+	    SessaoAberta sessao = registroSessao.obter(idPauta);
+	    long numPauta;
+	    if (sessao != null) {
+	        numPauta = sessao.getNumPauta();
+	        // o prazo já passou: só faltam as gravações dos votos aceitos até o fim dele
+	        try {
+	            if (!sessao.aguardarGravacoes(ESPERA_GRAVACOES_MS)) {
+	                log.warn("Pauta {} fechada com votos ainda em gravação", idPauta);
+	            }
+	        } catch (InterruptedException e) {
+	            Thread.currentThread().interrupt();
+	            return false;
 	        }
+	    } else {
+	        Optional<Pauta> pauta = pautaRepository.findById(idPauta);
+	        if (!pauta.isPresent()) {
+	            return true;
+	        }
+	        numPauta = pauta.get().getNumPauta();
+	    }
+	    if (!lideranca.isLider()) {
+	        removerSessao(idPauta);
+	        return true;
+	    }
+	    // no modo diario os votos confirmados chegam ao banco logo depois: a apuração espera por eles
+	    try {
+	        if (!gravadorVotos.aguardarAplicacao(ESPERA_GRAVACOES_MS)) {
+	            log.warn("Pauta {} fechada com votos confirmados ainda fora do banco", idPauta);
+	        }
+	    } catch (InterruptedException e) {
+	        Thread.currentThread().interrupt();
+	        return false;
+	    }
+	    // false: a pauta já não estava aberta, fechada antes por esta ou outra instância
+	    boolean fechada = resultadoPautaService.fecharSessao(idPauta, numPauta);
+	    removerSessao(idPauta);
+	    if (fechada) {
+	        eventos.publishEvent(new PautaAlteradaEvent(idPauta, StatusPauta.FECHADA));
 	    }
+	    return true;
 	}
 }
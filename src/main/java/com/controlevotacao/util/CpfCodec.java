@@ -0,0 +1,147 @@
+package com.controlevotacao.util;
+
+import java.util.Random;
+
+//Conversão e validação de CPF sem alocação: lê os 11 dígitos direto da String/char[] da requisição,
+//confere os dígitos verificadores (módulo 11) e devolve o número como long, que é como o cpf é guardado.
+//CPFs com todos os dígitos iguais passam no módulo 11 mas não existem, por isso também são recusados.
+public final class CpfCodec {
+
+	//Valor devolvido quando o cpf não é válido
+	public static final long INVALIDO = -1L;
+
+	public static final int TAMANHO = 11;
+
+	private CpfCodec() {
+	}
+
+	//Converte o cpf (somente os 11 dígitos) para long, ou retorna INVALIDO
+	public static long paraLong(CharSequence cpf) {
+		if (cpf == null || cpf.length() != TAMANHO) {
+			return INVALIDO;
+		}
+		long numero = 0;
+		int soma1 = 0;
+		int soma2 = 0;
+		boolean todosIguais = true;
+		char primeiro = cpf.charAt(0);
+		for (int i = 0; i < TAMANHO; i++) {
+			char c = cpf.charAt(i);
+			int digito = c - '0';
+			if (digito < 0 || digito > 9) {
+				return INVALIDO;
+			}
+			todosIguais &= c == primeiro;
+			numero = numero * 10 + digito;
+			// os pesos dos dois dígitos verificadores são acumulados na mesma passada
+			if (i < 9) {
+				soma1 += digito * (10 - i);
+			}
+			if (i < 10) {
+				soma2 += digito * (11 - i);
+			}
+		}
+		if (todosIguais || !confere(soma1, soma2, numero)) {
+			return INVALIDO;
+		}
+		return numero;
+	}
+
+	//Mesma conversão a partir de um trecho de char[], sem criar String
+	public static long paraLong(char[] cpf, int inicio, int tamanho) {
+		if (cpf == null || tamanho != TAMANHO || inicio < 0 || inicio + tamanho > cpf.length) {
+			return INVALIDO;
+		}
+		long numero = 0;
+		int soma1 = 0;
+		int soma2 = 0;
+		boolean todosIguais = true;
+		char primeiro = cpf[inicio];
+		for (int i = 0; i < TAMANHO; i++) {
+			char c = cpf[inicio + i];
+			int digito = c - '0';
+			if (digito < 0 || digito > 9) {
+				return INVALIDO;
+			}
+			todosIguais &= c == primeiro;
+			numero = numero * 10 + digito;
+			if (i < 9) {
+				soma1 += digito * (10 - i);
+			}
+			if (i < 10) {
+				soma2 += digito * (11 - i);
+			}
+		}
+		if (todosIguais || !confere(soma1, soma2, numero)) {
+			return INVALIDO;
+		}
+		return numero;
+	}
+
+	//Indica se o número é um cpf válido (faixa, dígitos verificadores e dígitos não repetidos)
+	public static boolean valido(long cpf) {
+		if (cpf < 0 || cpf > 99_999_999_999L) {
+			return false;
+		}
+		long base = cpf / 100;
+		return cpf == comDigitosVerificadores(base) && !todosIguais(cpf);
+	}
+
+	//Escreve os 11 dígitos do cpf, com zeros à esquerda, a partir da posição informada
+	public static void escrever(long cpf, char[] destino, int inicio) {
+		long resto = cpf;
+		for (int i = inicio + TAMANHO - 1; i >= inicio; i--) {
+			destino[i] = (char) ('0' + (int) (resto % 10));
+			resto /= 10;
+		}
+	}
+
+	//Retorna o cpf como texto de 11 dígitos, sem pontos ou traço
+	public static String paraString(long cpf) {
+		char[] digitos = new char[TAMANHO];
+		escrever(cpf, digitos, 0);
+		return new String(digitos);
+	}
+
+	//Gera um cpf válido aleatório
+	public static long gerar(Random random) {
+		long cpf;
+		do {
+			cpf = comDigitosVerificadores(random.nextInt(1_000_000_000));
+		} while (todosIguais(cpf));
+		return cpf;
+	}
+
+	//Acrescenta os dois dígitos verificadores aos 9 dígitos da base
+	public static long comDigitosVerificadores(long base) {
+		int soma1 = 0;
+		int soma2 = 0;
+		long resto = base;
+		// percorre a base do último para o primeiro dígito; os pesos vão de 2 a 10 (primeiro dv) e de 3 a 11 (segundo)
+		for (int peso = 2; peso <= 10; peso++) {
+			int digito = (int) (resto % 10);
+			resto /= 10;
+			soma1 += digito * peso;
+			soma2 += digito * (peso + 1);
+		}
+		int d1 = digitoVerificador(soma1);
+		int d2 = digitoVerificador(soma2 + d1 * 2);
+		return base * 100 + d1 * 10 + d2;
+	}
+
+	private static boolean confere(int soma1, int soma2, long numero) {
+		int d1 = (int) (numero / 10 % 10);
+		int d2 = (int) (numero % 10);
+		return digitoVerificador(soma1) == d1 && digitoVerificador(soma2) == d2;
+	}
+
+	private static int digitoVerificador(int soma) {
+		int d = 11 - (soma % 11);
+		return d > 9 ? 0 : d;
+	}
+
+	private static boolean todosIguais(long cpf) {
+		// 11111111111 * d representa os cpfs com todos os dígitos iguais (incluindo 00000000000)
+		return cpf % 11_111_111_111L == 0;
+	}
+}
@@ -1,12 +1,60 @@
+CREATE SEQUENCE IF NOT EXISTS seq_num_pauta;
+
 CREATE TABLE IF NOT EXISTS pauta (
     id_pauta VARCHAR(255) PRIMARY KEY,
-    status_pauta VARCHAR(255)
+    num_pauta BIGINT DEFAULT NEXT VALUE FOR seq_num_pauta NOT NULL UNIQUE,
+    status_pauta VARCHAR(255),
+    versao BIGINT DEFAULT 0 NOT NULL
 );
 
+-- bancos anteriores à chave numérica da pauta
+ALTER TABLE pauta ADD COLUMN IF NOT EXISTS num_pauta BIGINT DEFAULT NEXT VALUE FOR seq_num_pauta NOT NULL UNIQUE;
+
+-- formato compacto: id_voto = num_pauta * 100000000000 + cpf e voto em um byte (SIM=1, NAO=0).
+-- A chave única BIGINT é a própria árvore da tabela, sem índice secundário, e agrupa os votos de cada pauta.
 CREATE TABLE IF NOT EXISTS pauta_votacao (
-    id_pauta VARCHAR(255),
-    cod_cpf VARCHAR(255),
-    voto VARCHAR(255),
-    PRIMARY KEY (id_pauta, cod_cpf),
-    FOREIGN KEY (id_pauta) REFERENCES pauta(id_pauta)
+    id_voto BIGINT PRIMARY KEY,
+    voto TINYINT NOT NULL
+);
+
+-- telas de seleção listam as pautas de uma situação em ordem de id, página a página
+CREATE INDEX IF NOT EXISTS idx_pauta_status_id ON pauta (status_pauta, id_pauta);
+
+-- várias pautas podem ter sessão aberta ao mesmo tempo: remove de bancos anteriores o índice único de sessão aberta
+DROP INDEX IF EXISTS uk_pauta_sessao_aberta;
+ALTER TABLE pauta DROP COLUMN IF EXISTS sessao_aberta;
+
+-- resultado das pautas fechadas, gravado uma vez no fechamento da sessão
+CREATE TABLE IF NOT EXISTS pauta_resultado (
+    id_pauta VARCHAR(255) PRIMARY KEY,
+    votos_sim BIGINT NOT NULL,
+    votos_nao BIGINT NOT NULL,
+    data_fechamento TIMESTAMP NOT NULL
+);
+
+-- várias instâncias no mesmo banco: concessão (lease) de cada papel exclusivo, como o fechamento das sessões,
+-- renovada periodicamente pela instância que a detém
+CREATE TABLE IF NOT EXISTS lider_cluster (
+    papel VARCHAR(50) PRIMARY KEY,
+    id_no VARCHAR(255),
+    expira_em TIMESTAMP NOT NULL
+);
+
+-- alterações de pauta feitas por uma instância, lidas pelas demais para atualizar o estado em memória
+CREATE TABLE IF NOT EXISTS evento_pauta (
+    id_evento BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id_pauta VARCHAR(255) NOT NULL,
+    status_pauta VARCHAR(255) NOT NULL,
+    id_no VARCHAR(255) NOT NULL,
+    criado_em TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_evento_pauta_criado ON evento_pauta (criado_em);
+
+-- bancos anteriores à versão da linha (controle otimista de concorrência da pauta)
+ALTER TABLE pauta ADD COLUMN IF NOT EXISTS versao BIGINT DEFAULT 0 NOT NULL;
+
+-- quantidade de partições em que os votos estão distribuídos (ParticoesVotos); sem linha, uma única tabela pauta_votacao
+CREATE TABLE IF NOT EXISTS particionamento_votos (
+    id INT PRIMARY KEY,
+    particoes INT NOT NULL
 );
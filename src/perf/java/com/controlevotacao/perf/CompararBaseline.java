@@ -0,0 +1,72 @@
+package com.controlevotacao.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Compara o resultado de uma execução dos benchmarks com a baseline registrada.
+//Uso: CompararBaseline [baseline.json] [resultado.json]; sem argumentos usa src/perf/resultados/baseline.json
+//e a execução mais recente (jmh-*.json) da mesma pasta.
+public final class CompararBaseline {
+
+	private static final File PASTA_RESULTADOS = new File("src/perf/resultados");
+
+	private CompararBaseline() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		File baseline = args.length > 0 ? new File(args[0]) : new File(PASTA_RESULTADOS, "baseline.json");
+		File resultado = args.length > 1 ? new File(args[1]) : ultimaExecucao();
+		if (resultado == null) {
+			System.err.println("Nenhum resultado jmh-*.json em " + PASTA_RESULTADOS);
+			return;
+		}
+
+		ObjectMapper mapper = new ObjectMapper();
+		Map<String, JsonNode> anteriores = porNome(mapper.readTree(baseline));
+		Map<String, JsonNode> atuais = porNome(mapper.readTree(resultado));
+
+		System.out.println("Baseline:  " + baseline);
+		System.out.println("Resultado: " + resultado);
+		System.out.printf("%-60s %14s %14s %-8s %9s%n", "Benchmark", "Baseline", "Atual", "Unidade", "Variação");
+		for (Map.Entry<String, JsonNode> atual : atuais.entrySet()) {
+			JsonNode metrica = atual.getValue().path("primaryMetric");
+			double score = metrica.path("score").asDouble();
+			String unidade = metrica.path("scoreUnit").asText();
+			JsonNode anterior = anteriores.get(atual.getKey());
+			if (anterior == null) {
+				System.out.printf("%-60s %14s %14.3f %-8s %9s%n", atual.getKey(), "-", score, unidade, "novo");
+				continue;
+			}
+			double scoreAnterior = anterior.path("primaryMetric").path("score").asDouble();
+			double variacao = (score - scoreAnterior) / scoreAnterior * 100;
+			System.out.printf("%-60s %14.3f %14.3f %-8s %+8.1f%%%n", atual.getKey(), scoreAnterior, score, unidade, variacao);
+		}
+	}
+
+	//Indexa os resultados pelo nome do benchmark mais os parâmetros, se houver
+	private static Map<String, JsonNode> porNome(JsonNode resultados) {
+		Map<String, JsonNode> porNome = new LinkedHashMap<>();
+		for (JsonNode r : resultados) {
+			StringBuilder nome = new StringBuilder(r.path("benchmark").asText().replace("com.controlevotacao.perf.", ""));
+			JsonNode params = r.path("params");
+			params.fieldNames().forEachRemaining(p -> nome.append(' ').append(p).append('=').append(params.path(p).asText()));
+			porNome.put(nome.toString(), r);
+		}
+		return porNome;
+	}
+
+	private static File ultimaExecucao() {
+		File[] execucoes = PASTA_RESULTADOS.listFiles((pasta, nome) -> nome.startsWith("jmh-") && nome.endsWith(".json"));
+		if (execucoes == null || execucoes.length == 0) {
+			return null;
+		}
+		return Arrays.stream(execucoes).max(Comparator.comparing(File::getName)).orElse(null);
+	}
+}
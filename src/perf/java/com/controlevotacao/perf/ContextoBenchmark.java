@@ -0,0 +1,54 @@
+package com.controlevotacao.perf;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.controlevotacao.ControleVotacaoApplication;
+
+//Sobe a aplicação (sem servidor web) com um H2 em memória e um stub local do serviço de validação de cpf,
+//que responde ABLE_TO_VOTE para qualquer cpf. Usado pelos benchmarks que precisam dos beans reais.
+final class ContextoBenchmark implements AutoCloseable {
+
+	private final StubValidacaoCpf stubCpf;
+	private final ConfigurableApplicationContext contexto;
+
+	private ContextoBenchmark(String url, String... propriedades) throws IOException {
+		stubCpf = new StubValidacaoCpf(0, 0);
+		// passados como argumentos para terem precedência sobre o application.properties
+		List<String> argumentos = new ArrayList<>(Arrays.asList("--spring.datasource.url=" + url,
+				"--app.url.valida.cpf=" + stubCpf.url(),
+				"--logging.level.root=WARN"));
+		for (String propriedade : propriedades) {
+			argumentos.add("--" + propriedade);
+		}
+		contexto = new SpringApplicationBuilder(ControleVotacaoApplication.class)
+				.web(WebApplicationType.NONE)
+				.run(argumentos.toArray(new String[0]));
+	}
+
+	static ContextoBenchmark iniciar(String banco, String... propriedades) throws IOException {
+		return new ContextoBenchmark("jdbc:h2:mem:" + banco + ";DB_CLOSE_DELAY=-1", propriedades);
+	}
+
+	//Mesma aplicação com o banco em arquivo na pasta informada e propriedades extras no formato nome=valor
+	static ContextoBenchmark iniciarEmArquivo(Path pasta, String... propriedades) throws IOException {
+		return new ContextoBenchmark("jdbc:h2:file:" + pasta.resolve("banco").toAbsolutePath(), propriedades);
+	}
+
+	<T> T bean(Class<T> tipo) {
+		return contexto.getBean(tipo);
+	}
+
+	@Override
+	public void close() {
+		contexto.close();
+		stubCpf.close();
+	}
+}
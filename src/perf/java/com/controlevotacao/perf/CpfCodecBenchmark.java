@@ -0,0 +1,118 @@
+package com.controlevotacao.perf;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.controlevotacao.util.CpfCodec;
+
+//Custo da conversão/validação de cpf feita no caminho do voto e da geração de cpfs da tela de voto.
+//Os métodos "antigo" reproduzem o código anterior ao CpfCodec para comparação.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpfCodecBenchmark {
+
+	private static final int QUANTIDADE = 1024;
+
+	private final String[] validos = new String[QUANTIDADE];
+	private final String[] digitoErrado = new String[QUANTIDADE];
+	private final char[][] validosChars = new char[QUANTIDADE][];
+	private final long[] numeros = new long[QUANTIDADE];
+	private final Random random = new Random(42);
+	private int i;
+
+	@Setup
+	public void preparar() {
+		for (int k = 0; k < QUANTIDADE; k++) {
+			long cpf = CpfCodec.gerar(random);
+			numeros[k] = cpf;
+			validos[k] = CpfCodec.paraString(cpf);
+			validosChars[k] = validos[k].toCharArray();
+			// troca o último dígito para errar o segundo verificador
+			digitoErrado[k] = CpfCodec.paraString(cpf / 10 * 10 + (cpf % 10 + 1) % 10);
+		}
+	}
+
+	private int proximo() {
+		return i = (i + 1) & (QUANTIDADE - 1);
+	}
+
+	@Benchmark
+	public long paraLongValido() {
+		return CpfCodec.paraLong(validos[proximo()]);
+	}
+
+	@Benchmark
+	public long paraLongDigitoErrado() {
+		return CpfCodec.paraLong(digitoErrado[proximo()]);
+	}
+
+	@Benchmark
+	public long paraLongChars() {
+		char[] cpf = validosChars[proximo()];
+		return CpfCodec.paraLong(cpf, 0, cpf.length);
+	}
+
+	@Benchmark
+	public boolean validoLong() {
+		return CpfCodec.valido(numeros[proximo()]);
+	}
+
+	@Benchmark
+	public String paraString() {
+		return CpfCodec.paraString(numeros[proximo()]);
+	}
+
+	@Benchmark
+	public String gerar() {
+		return CpfCodec.paraString(CpfCodec.gerar(random));
+	}
+
+	//Conversão anterior: só conferia os 11 dígitos, sem os verificadores
+	@Benchmark
+	public long antigoParaLong() {
+		String cpf = validos[proximo()];
+		long numero = 0;
+		for (int k = 0; k < 11; k++) {
+			char c = cpf.charAt(k);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			numero = numero * 10 + (c - '0');
+		}
+		return numero;
+	}
+
+	//Geração anterior, com String.format
+	@Benchmark
+	public String antigoGerar() {
+		int n1 = random.nextInt(10);
+		int n2 = random.nextInt(10);
+		int n3 = random.nextInt(10);
+		int n4 = random.nextInt(10);
+		int n5 = random.nextInt(10);
+		int n6 = random.nextInt(10);
+		int n7 = random.nextInt(10);
+		int n8 = random.nextInt(10);
+		int n9 = random.nextInt(10);
+		int d1 = 11 - ((n1*10 + n2*9 + n3*8 + n4*7 + n5*6 + n6*5 + n7*4 + n8*3 + n9*2) % 11);
+		d1 = (d1 > 9) ? 0 : d1;
+		int d2 = 11 - ((n1*11 + n2*10 + n3*9 + n4*8 + n5*7 + n6*6 + n7*5 + n8*4 + n9*3 + d1*2) % 11);
+		d2 = (d2 > 9) ? 0 : d2;
+		return String.format("%d%d%d%d%d%d%d%d%d%d%d", n1,n2,n3,n4,n5,n6,n7,n8,n9,d1,d2);
+	}
+}
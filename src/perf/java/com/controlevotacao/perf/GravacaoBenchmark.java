@@ -0,0 +1,82 @@
+package com.controlevotacao.perf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.service.GravadorVotos;
+import com.controlevotacao.service.RegistroSessao;
+import com.controlevotacao.service.VotacaoService;
+import com.controlevotacao.util.CpfCodec;
+
+//Tempo até a confirmação de um voto novo em cada modo de gravação, com 8 threads gravando ao mesmo tempo
+//sobre H2 em arquivo: direto espera o commit do voto, lote o commit do lote e diario a gravação do diário em disco.
+//particoes é a quantidade de tabelas em que os votos são distribuídos (votacao.armazenamento.particoes).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class GravacaoBenchmark {
+
+	@Param({"direto", "lote", "diario"})
+	private String modo;
+
+	@Param({"1", "4"})
+	private int particoes;
+
+	private Path pasta;
+	private ContextoBenchmark contexto;
+	private GravadorVotos gravador;
+	private long numPauta;
+	private final AtomicLong proximaBase = new AtomicLong(100_000_000L);
+
+	@Setup
+	public void iniciar() throws IOException {
+		pasta = Files.createTempDirectory("gravacao-" + modo);
+		contexto = ContextoBenchmark.iniciarEmArquivo(pasta, "votacao.gravacao.modo=" + modo,
+				"votacao.armazenamento.particoes=" + particoes,
+				"votacao.gravacao.diario.diretorio=" + pasta.resolve("diario"));
+		gravador = contexto.bean(GravadorVotos.class);
+		VotacaoService service = contexto.bean(VotacaoService.class);
+		service.criarPauta("gravacao");
+		service.abrirSessao("gravacao", 600);
+		numPauta = contexto.bean(RegistroSessao.class).obter("gravacao").getNumPauta();
+	}
+
+	@TearDown
+	public void encerrar() throws IOException {
+		contexto.close();
+		try (Stream<Path> arquivos = Files.walk(pasta)) {
+			arquivos.sorted(Comparator.reverseOrder()).forEach(arquivo -> arquivo.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public String gravar() {
+		long cpf = CpfCodec.comDigitosVerificadores(proximaBase.getAndIncrement());
+		return gravador.gravar(new PautaVotacao(numPauta, cpf, TipoVoto.SIM)).join();
+	}
+}
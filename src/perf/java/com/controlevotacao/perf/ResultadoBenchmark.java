@@ -0,0 +1,121 @@
+package com.controlevotacao.perf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.controlevotacao.model.PautaResultado;
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.repository.PautaResultadoRepository;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+import com.controlevotacao.service.AuditoriaService;
+import com.controlevotacao.service.RegistroSessao;
+import com.controlevotacao.service.ResultadoPautaService;
+import com.controlevotacao.service.VotacaoService;
+import com.controlevotacao.util.CpfCodec;
+
+//Resultado de uma pauta fechada com muitos votos, sobre H2 em memória.
+//resultadoPauta é a consulta do serviço (cache do resultado gravado no fechamento), resultadoPautaSemCache
+//a leitura de pauta_resultado pela chave primária, recontagem a contagem agrupada dos votos da pauta,
+//feita uma única vez no fechamento, e auditoria a recontagem voto a voto da auditoria; os votos ficam em uma tabela
+//ou distribuídos em partições (consultadas em paralelo).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultadoBenchmark {
+
+	private static final String PAUTA = "resultado";
+
+	@Param("200000")
+	private int votos;
+
+	@Param({"1", "4"})
+	private int particoes;
+
+	private ContextoBenchmark contexto;
+	private VotacaoService service;
+	private PautaResultadoRepository pautaResultadoRepository;
+	private PautaVotacaoRepository pautaVotacaoRepository;
+	private AuditoriaService auditoriaService;
+	private long numPauta;
+
+	@Setup
+	public void iniciar() throws IOException {
+		contexto = ContextoBenchmark.iniciar("resultado", "votacao.armazenamento.particoes=" + particoes);
+		service = contexto.bean(VotacaoService.class);
+		pautaResultadoRepository = contexto.bean(PautaResultadoRepository.class);
+		pautaVotacaoRepository = contexto.bean(PautaVotacaoRepository.class);
+		auditoriaService = contexto.bean(AuditoriaService.class);
+
+		service.criarPauta(PAUTA);
+		service.abrirSessao(PAUTA, 600);
+		RegistroSessao registroSessao = contexto.bean(RegistroSessao.class);
+		numPauta = registroSessao.obter(PAUTA).getNumPauta();
+
+		List<PautaVotacao> lote = new ArrayList<>();
+		for (int i = 0; i < votos; i++) {
+			long cpf = CpfCodec.comDigitosVerificadores(100_000_000L + i);
+			lote.add(new PautaVotacao(numPauta, cpf, i % 3 == 0 ? TipoVoto.NAO : TipoVoto.SIM));
+			if (lote.size() == 10_000) {
+				pautaVotacaoRepository.inserirLote(lote);
+				lote.clear();
+			}
+		}
+		if (!lote.isEmpty()) {
+			pautaVotacaoRepository.inserirLote(lote);
+		}
+
+		// fecha como o agendamento faria, apurando e gravando o resultado
+		contexto.bean(ResultadoPautaService.class).fecharSessao(PAUTA, numPauta);
+		registroSessao.fechar(PAUTA);
+
+		// sem isso o H2 devolve o resultado guardado da mesma consulta sobre a tabela inalterada e a recontagem não conta nada
+		contexto.bean(JdbcTemplate.class).execute("SET OPTIMIZE_REUSE_RESULTS FALSE");
+	}
+
+	@TearDown
+	public void encerrar() {
+		contexto.close();
+	}
+
+	@Benchmark
+	public Map<String, Object> resultadoPauta() {
+		return service.obterResultadoPauta(PAUTA);
+	}
+
+	@Benchmark
+	public Optional<PautaResultado> resultadoPautaSemCache() {
+		return pautaResultadoRepository.findById(PAUTA);
+	}
+
+	@Benchmark
+	public long[] recontagem() {
+		return pautaVotacaoRepository.contarVotosPorVoto(numPauta);
+	}
+
+	@Benchmark
+	public Map<String, Object> auditoria() {
+		return auditoriaService.auditar(PAUTA);
+	}
+}
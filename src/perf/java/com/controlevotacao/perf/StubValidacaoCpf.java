@@ -0,0 +1,83 @@
+package com.controlevotacao.perf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+//Stub local do serviço de validação de cpf (GET /users/{cpf}) usado por benchmarks e testes de carga.
+//Responde UNABLE_TO_VOTE para a fração "proporcaoInaptos" dos cpfs (escolhida pelo próprio número, então é estável)
+//e ABLE_TO_VOTE para os demais. A latência é simulada agendando a resposta, sem prender threads do stub.
+final class StubValidacaoCpf implements AutoCloseable {
+
+	private static final byte[] APTO = "{\"status\":\"ABLE_TO_VOTE\"}".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] INAPTO = "{\"status\":\"UNABLE_TO_VOTE\"}".getBytes(StandardCharsets.UTF_8);
+
+	private final HttpServer servidor;
+	private final ExecutorService threads;
+	private final ScheduledExecutorService atrasos;
+	private final long latenciaMs;
+	private final int inaptosPorMil;
+	private final LongAdder chamadas = new LongAdder();
+
+	StubValidacaoCpf(long latenciaMs, double proporcaoInaptos) throws IOException {
+		this.latenciaMs = latenciaMs;
+		this.inaptosPorMil = (int) Math.round(proporcaoInaptos * 1000);
+		// sem TCP_NODELAY o stub envia cabeçalho e corpo em pacotes separados e cada chamada espera o ACK atrasado (~40ms)
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		threads = Executors.newFixedThreadPool(8);
+		atrasos = latenciaMs > 0 ? Executors.newScheduledThreadPool(2) : null;
+		servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		servidor.createContext("/users/", this::atender);
+		servidor.setExecutor(threads);
+		servidor.start();
+	}
+
+	//URL base no formato de app.url.valida.cpf
+	String url() {
+		return "http://127.0.0.1:" + servidor.getAddress().getPort() + "/users/";
+	}
+
+	long getChamadas() {
+		return chamadas.sum();
+	}
+
+	private void atender(HttpExchange troca) {
+		chamadas.increment();
+		String caminho = troca.getRequestURI().getPath();
+		long cpf = Long.parseLong(caminho.substring(caminho.lastIndexOf('/') + 1));
+		byte[] resposta = cpf % 1000 < inaptosPorMil ? INAPTO : APTO;
+		if (atrasos == null) {
+			responder(troca, resposta);
+		} else {
+			atrasos.schedule(() -> responder(troca, resposta), latenciaMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static void responder(HttpExchange troca, byte[] resposta) {
+		try (OutputStream corpo = troca.getResponseBody()) {
+			troca.getResponseHeaders().add("Content-Type", "application/json");
+			troca.sendResponseHeaders(200, resposta.length);
+			corpo.write(resposta);
+		} catch (IOException e) {
+			troca.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		servidor.stop(0);
+		threads.shutdownNow();
+		if (atrasos != null) {
+			atrasos.shutdownNow();
+		}
+	}
+}
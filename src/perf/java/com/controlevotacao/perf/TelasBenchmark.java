@@ -0,0 +1,72 @@
+package com.controlevotacao.perf;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.controlevotacao.controller.TelasController;
+import com.controlevotacao.model.StatusPauta;
+import com.controlevotacao.service.PautaAlteradaEvent;
+import com.controlevotacao.service.VotacaoService;
+
+//Tela de abertura de sessão sem pauta aberta e com muitas pautas pendentes, sobre H2 em memória.
+//As telas são servidas do cache já serializadas; telaAberturaSessaoPautaInvalidada invalida o cache antes de cada
+//chamada e mede a montagem completa: consulta das pendentes, montagem do mapa e serialização para JSON.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TelasBenchmark {
+
+	@Param("1000")
+	private int pautasPendentes;
+
+	private ContextoBenchmark contexto;
+	private TelasController telas;
+
+	@Setup
+	public void iniciar() throws IOException {
+		contexto = ContextoBenchmark.iniciar("telas");
+		telas = contexto.bean(TelasController.class);
+
+		VotacaoService service = contexto.bean(VotacaoService.class);
+		for (int i = 1; i <= pautasPendentes; i++) {
+			service.criarPauta(String.format("pauta-%04d", i));
+		}
+	}
+
+	@TearDown
+	public void encerrar() {
+		contexto.close();
+	}
+
+	@Benchmark
+	public byte[] telaAberturaSessaoPauta() throws IOException {
+		return telas.getTelaAberturaSessaoPauta(null).getBody();
+	}
+
+	@Benchmark
+	public byte[] telaAberturaSessaoPautaInvalidada() throws IOException {
+		telas.pautaAlterada(new PautaAlteradaEvent("pauta-0001", StatusPauta.PENDENTE));
+		return telas.getTelaAberturaSessaoPauta(null).getBody();
+	}
+
+	@Benchmark
+	public byte[] telaCadastroPauta() throws IOException {
+		return telas.getTelaCadastroPauta().getBody();
+	}
+}
@@ -0,0 +1,240 @@
+package com.controlevotacao.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.controlevotacao.ControleVotacaoApplication;
+import com.controlevotacao.util.CpfCodec;
+
+//Teste de carga HTTP autocontido: sobe o stub do serviço de validação de cpf e a aplicação (Tomcat em porta livre,
+//H2 em arquivo temporário), abre as sessões pela API e dispara votos sim/nao com cpfs novos a partir de N clientes
+//concorrentes, distribuídos entre as pautas abertas. Ao final mostra vazão, percentis de latência e a quantidade
+//de respostas por status. Configuração por propriedades de sistema (ver o profile "carga" no pom.xml):
+//  carga.clientes, carga.pautas (sessões abertas ao mesmo tempo), carga.aquecimento (s), carga.duracao (s),
+//  carga.stub.latencia-ms, carga.stub.inaptos (0 a 1)
+//  e carga.app com propriedades extras para a aplicação separadas por espaço, ex.: "votacao.gravacao.modo=lote".
+public final class TesteCarga {
+
+	private TesteCarga() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int clientes = Integer.getInteger("carga.clientes", 50);
+		int pautas = Integer.getInteger("carga.pautas", 1);
+		int aquecimento = Integer.getInteger("carga.aquecimento", 10);
+		int duracao = Integer.getInteger("carga.duracao", 30);
+		long latenciaStubMs = Long.getLong("carga.stub.latencia-ms", 20);
+		double inaptos = Double.parseDouble(System.getProperty("carga.stub.inaptos", "0.1"));
+		String argsApp = System.getProperty("carga.app", "").trim();
+
+		Path pasta = Files.createTempDirectory("carga-votacao");
+		try (StubValidacaoCpf stub = new StubValidacaoCpf(latenciaStubMs, inaptos)) {
+			List<String> argumentos = new ArrayList<>(Arrays.asList(
+					"--server.port=0",
+					"--spring.datasource.url=jdbc:h2:file:" + new File(pasta.toFile(), "carga").getAbsolutePath(),
+					"--app.url.valida.cpf=" + stub.url(),
+					"--logging.level.root=WARN"));
+			if (!argsApp.isEmpty()) {
+				for (String propriedade : argsApp.split("\\s+")) {
+					argumentos.add("--" + propriedade);
+				}
+			}
+			ConfigurableApplicationContext contexto = new SpringApplicationBuilder(ControleVotacaoApplication.class)
+					.run(argumentos.toArray(new String[0]));
+			try {
+				int porta = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+				String base = "http://127.0.0.1:" + porta + contexto.getEnvironment().getProperty("server.servlet.context-path", "");
+
+				System.out.printf("Clientes: %d | pautas: %d | aquecimento: %d s | medição: %d s | stub: %d ms, %.0f%% inaptos | args: %s%n",
+						clientes, pautas, aquecimento, duracao, latenciaStubMs, inaptos * 100, argsApp.isEmpty() ? "-" : argsApp);
+				new Execucao(base, clientes, pautas, aquecimento, duracao, stub).executar();
+			} finally {
+				contexto.close();
+			}
+		} finally {
+			try (Stream<Path> arquivos = Files.walk(pasta)) {
+				arquivos.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	private static final class Execucao {
+		private final String base;
+		private final int clientes;
+		private final String[] pautas;
+		private final int aquecimento;
+		private final int duracao;
+		private final StubValidacaoCpf stub;
+		private final CloseableHttpClient http;
+		private final AtomicLong proximaBaseCpf = new AtomicLong(100_000_000L);
+		private final ConcurrentMap<String, LongAdder> porStatus = new ConcurrentHashMap<>();
+
+		Execucao(String base, int clientes, int pautas, int aquecimento, int duracao, StubValidacaoCpf stub) {
+			this.base = base;
+			this.clientes = clientes;
+			this.pautas = new String[pautas];
+			this.aquecimento = aquecimento;
+			this.duracao = duracao;
+			this.stub = stub;
+			PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+			pool.setMaxTotal(clientes);
+			pool.setDefaultMaxPerRoute(clientes);
+			this.http = HttpClients.custom().setConnectionManager(pool).build();
+		}
+
+		void executar() throws Exception {
+			int minutos = (aquecimento + duracao) / 60 + 2;
+			for (int i = 0; i < pautas.length; i++) {
+				String idPauta = "carga-" + System.currentTimeMillis() + "-" + i;
+				pautas[i] = idPauta;
+				System.out.println("criarPauta: " + post("/votacao/criarPauta", "{\"idPauta\":\"" + idPauta + "\"}"));
+				System.out.println("abrirSessao: " + post("/votacao/abrirSessao",
+						"{\"idPauta\":\"" + idPauta + "\",\"duracao\":\"" + minutos + "\"}"));
+			}
+
+			long inicio = System.nanoTime();
+			long inicioMedicao = inicio + TimeUnit.SECONDS.toNanos(aquecimento);
+			long fim = inicioMedicao + TimeUnit.SECONDS.toNanos(duracao);
+
+			Cliente[] threads = new Cliente[clientes];
+			for (int i = 0; i < clientes; i++) {
+				threads[i] = new Cliente(i, inicioMedicao, fim);
+				threads[i].start();
+			}
+			// contagem das chamadas ao stub só durante a medição
+			long espera = TimeUnit.NANOSECONDS.toMillis(inicioMedicao - System.nanoTime());
+			if (espera > 0) {
+				Thread.sleep(espera);
+			}
+			long chamadasStubAntes = stub.getChamadas();
+			for (Cliente c : threads) {
+				c.join();
+			}
+			long chamadasStub = stub.getChamadas() - chamadasStubAntes;
+
+			int total = 0;
+			for (Cliente c : threads) {
+				total += c.quantidade;
+			}
+			long[] latencias = new long[total];
+			int pos = 0;
+			for (Cliente c : threads) {
+				System.arraycopy(c.latencias, 0, latencias, pos, c.quantidade);
+				pos += c.quantidade;
+			}
+			Arrays.sort(latencias);
+
+			System.out.printf("Requisições medidas: %d | vazão: %.1f req/s | chamadas ao stub: %d%n",
+					total, total / (double) duracao, chamadasStub);
+			if (total > 0) {
+				System.out.printf("Latência (ms): p50=%.2f p95=%.2f p99=%.2f p99.9=%.2f máx=%.2f%n",
+						percentil(latencias, 0.50), percentil(latencias, 0.95), percentil(latencias, 0.99),
+						percentil(latencias, 0.999), latencias[total - 1] / 1e6);
+			}
+			Map<String, Long> status = new TreeMap<>();
+			porStatus.forEach((s, n) -> status.put(s, n.sum()));
+			System.out.println("Respostas por status: " + status);
+			for (String idPauta : pautas) {
+				System.out.println("Resultado parcial: " + get("/votacao/resultadoParcial?idPauta=" + idPauta));
+			}
+			http.close();
+		}
+
+		private static double percentil(long[] ordenadas, double p) {
+			int i = (int) Math.ceil(p * ordenadas.length) - 1;
+			return ordenadas[Math.max(i, 0)] / 1e6;
+		}
+
+		private String post(String caminho, String json) throws IOException {
+			HttpPost post = new HttpPost(base + caminho);
+			post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+			try (CloseableHttpResponse resposta = http.execute(post)) {
+				return resposta.getStatusLine().getStatusCode() + " " + EntityUtils.toString(resposta.getEntity());
+			}
+		}
+
+		private String get(String caminho) throws IOException {
+			try (CloseableHttpResponse resposta = http.execute(new HttpGet(base + caminho))) {
+				return resposta.getStatusLine().getStatusCode() + " " + EntityUtils.toString(resposta.getEntity());
+			}
+		}
+
+		//Cliente em laço fechado: envia o próximo voto assim que recebe a resposta do anterior
+		private final class Cliente extends Thread {
+			private final String idPauta;
+			private final long inicioMedicao;
+			private final long fim;
+			private long[] latencias = new long[4096];
+			private int quantidade;
+
+			Cliente(int numero, long inicioMedicao, long fim) {
+				super("cliente-carga-" + numero);
+				this.idPauta = pautas[numero % pautas.length];
+				this.inicioMedicao = inicioMedicao;
+				this.fim = fim;
+			}
+
+			@Override
+			public void run() {
+				boolean sim = getName().hashCode() % 2 == 0;
+				while (true) {
+					long t0 = System.nanoTime();
+					if (t0 >= fim) {
+						return;
+					}
+					String cpf = CpfCodec.paraString(CpfCodec.comDigitosVerificadores(proximaBaseCpf.getAndIncrement()));
+					HttpPost post = new HttpPost(base + (sim ? "/votacao/votar/sim" : "/votacao/votar/nao"));
+					post.setEntity(new StringEntity("{\"idPauta\":\"" + idPauta + "\",\"codCpf\":\"" + cpf + "\"}",
+						ContentType.APPLICATION_JSON));
+					sim = !sim;
+					String status;
+					try (CloseableHttpResponse resposta = http.execute(post)) {
+						EntityUtils.consume(resposta.getEntity());
+						status = String.valueOf(resposta.getStatusLine().getStatusCode());
+					} catch (IOException e) {
+						status = e.getClass().getSimpleName();
+					}
+					long t1 = System.nanoTime();
+					if (t0 >= inicioMedicao && t1 <= fim) {
+						registrar(t1 - t0, status);
+					}
+				}
+			}
+
+			private void registrar(long latencia, String status) {
+				if (quantidade == latencias.length) {
+					latencias = Arrays.copyOf(latencias, quantidade * 2);
+				}
+				latencias[quantidade++] = latencia;
+				porStatus.computeIfAbsent(status, s -> new LongAdder()).increment();
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.controlevotacao.perf;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import com.controlevotacao.controller.TelasController;
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.service.RegistroSessao;
+import com.controlevotacao.service.VotacaoService;
+import com.controlevotacao.util.CpfCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Caminho do voto e tela de voto com uma sessão aberta, sobre H2 em memória.
+//Cada voto usa um cpf novo, então registrarVoto/processarVoto/votar medem a gravação de fato;
+//votar passa também pela validação do cpf no stub local (sempre falta no cache).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VotoBenchmark {
+
+	private ContextoBenchmark contexto;
+	private VotacaoService service;
+	private TelasController telas;
+	private ObjectMapper objectMapper;
+	private long numPauta;
+	private long cpfDuplicado;
+	private long proximaBase = 100_000_000L;
+
+	@Setup
+	public void iniciar() throws IOException {
+		contexto = ContextoBenchmark.iniciar("voto");
+		service = contexto.bean(VotacaoService.class);
+		telas = contexto.bean(TelasController.class);
+		objectMapper = contexto.bean(ObjectMapper.class);
+
+		service.criarPauta("benchmark");
+		service.abrirSessao("benchmark", 600);
+		numPauta = contexto.bean(RegistroSessao.class).obter("benchmark").getNumPauta();
+
+		cpfDuplicado = novoCpf();
+		service.registrarVoto(new PautaVotacao(numPauta, cpfDuplicado, TipoVoto.SIM));
+	}
+
+	@TearDown
+	public void encerrar() {
+		contexto.close();
+	}
+
+	private long novoCpf() {
+		return CpfCodec.comDigitosVerificadores(proximaBase++);
+	}
+
+	@Benchmark
+	public String registrarVoto() {
+		return service.registrarVoto(new PautaVotacao(numPauta, novoCpf(), TipoVoto.SIM));
+	}
+
+	@Benchmark
+	public String registrarVotoDuplicado() {
+		return service.registrarVoto(new PautaVotacao(numPauta, cpfDuplicado, TipoVoto.SIM));
+	}
+
+	@Benchmark
+	public ResponseEntity<Map<String, String>> processarVoto() {
+		return service.processarVoto(new PautaVotacao(numPauta, novoCpf(), TipoVoto.NAO));
+	}
+
+	@Benchmark
+	public ResponseEntity<Map<String, String>> votar() {
+		return service.votar("benchmark", CpfCodec.paraString(novoCpf()), TipoVoto.SIM);
+	}
+
+	@Benchmark
+	public String gerarCpfAleatorio() {
+		return service.gerarCpfAleatorio();
+	}
+
+	//Montagem do mapa da tela e serialização para JSON, como o Spring MVC faria na resposta
+	@Benchmark
+	public byte[] telaVoto() throws IOException {
+		return objectMapper.writeValueAsBytes(telas.getTelaVoto());
+	}
+}
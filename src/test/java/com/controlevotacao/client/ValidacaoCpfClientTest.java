@@ -0,0 +1,225 @@
+package com.controlevotacao.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.junit.jupiter.api.Test;
+
+import com.controlevotacao.client.ValidacaoCpfClient.Circuito;
+import com.controlevotacao.client.ValidacaoCpfClient.Passagem;
+import com.controlevotacao.client.ValidacaoCpfClient.PoliticaFalha;
+import com.controlevotacao.exception.ValidacaoCpfIndisponivelException;
+import com.controlevotacao.service.SituacaoCpf;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+class ValidacaoCpfClientTest {
+
+	private static final long CPF = 11144477735L;
+
+	//Se o cliente HTTP recusa a chamada na hora, a vaga do bulkhead volta: com uma vaga só, todas as chamadas chegam a ele
+	@Test
+	void devolveAVagaQuandoAChamadaNaoInicia() throws Exception {
+		ClienteFalso http = new ClienteFalso();
+		http.resposta = callback -> {
+			throw new IllegalStateException("Request cannot be executed; I/O reactor status: STOPPED");
+		};
+		ValidacaoCpfClient cliente = new ValidacaoCpfClient("http://localhost/users/", http, 1, 5, 10000,
+				PoliticaFalha.FALHA_FECHADA, new ObjectMapper());
+
+		for (int i = 0; i < 3; i++) {
+			Throwable erro = falha(cliente.consultar(CPF));
+			assertInstanceOf(ValidacaoCpfIndisponivelException.class, erro);
+			assertTrue(erro.getMessage().startsWith("Não foi possível iniciar"), erro.getMessage());
+		}
+		assertEquals(3, http.chamadas.get());
+	}
+
+	//Fechado -> aberto após o limite de falhas -> meio aberto com uma chamada de teste só -> fechado quando o teste dá certo
+	@Test
+	void circuitoFechaQuandoATentativaDaCerto() throws InterruptedException {
+		Circuito circuito = new Circuito(3, 50);
+		assertEquals(Passagem.NORMAL, circuito.permiteChamada());
+		circuito.registrarFalha();
+		circuito.registrarFalha();
+		assertEquals(Passagem.NORMAL, circuito.permiteChamada());
+		assertFalse(circuito.isAberto());
+
+		circuito.registrarFalha();
+		assertTrue(circuito.isAberto());
+		assertEquals(Passagem.RECUSADA, circuito.permiteChamada());
+
+		Thread.sleep(80);
+		assertFalse(circuito.isAberto());
+		assertEquals(Passagem.TESTE, circuito.permiteChamada());
+		assertEquals(Passagem.RECUSADA, circuito.permiteChamada());
+
+		circuito.registrarSucesso();
+		assertEquals(Passagem.NORMAL, circuito.permiteChamada());
+		// as falhas voltam a contar do zero
+		circuito.registrarFalha();
+		circuito.registrarFalha();
+		assertEquals(Passagem.NORMAL, circuito.permiteChamada());
+	}
+
+	//Uma falha na chamada de teste reabre o circuito na hora, sem esperar o limite de falhas
+	@Test
+	void circuitoReabreQuandoATentativaFalha() throws InterruptedException {
+		Circuito circuito = new Circuito(3, 50);
+		for (int i = 0; i < 3; i++) {
+			circuito.registrarFalha();
+		}
+		Thread.sleep(80);
+		assertEquals(Passagem.TESTE, circuito.permiteChamada());
+
+		circuito.registrarFalha();
+		assertTrue(circuito.isAberto());
+		assertEquals(Passagem.RECUSADA, circuito.permiteChamada());
+
+		Thread.sleep(80);
+		assertEquals(Passagem.TESTE, circuito.permiteChamada());
+	}
+
+	//Só a chamada de teste devolve a vaga de teste; as normais e as recusadas não a liberam para outra
+	@Test
+	void circuitoDevolveSoAVagaDeTeste() throws InterruptedException {
+		Circuito circuito = new Circuito(1, 50);
+		circuito.registrarFalha();
+		Thread.sleep(80);
+		assertEquals(Passagem.TESTE, circuito.permiteChamada());
+
+		circuito.liberarTentativa(Passagem.NORMAL);
+		circuito.liberarTentativa(Passagem.RECUSADA);
+		assertEquals(Passagem.RECUSADA, circuito.permiteChamada());
+
+		circuito.liberarTentativa(Passagem.TESTE);
+		assertEquals(Passagem.TESTE, circuito.permiteChamada());
+	}
+
+	//A chamada de teste que não consegue conexão do pool devolve a vaga: a seguinte testa o serviço e fecha o circuito
+	@Test
+	void devolveAVagaDeTesteQuandoOPoolEsgota() throws Exception {
+		ClienteFalso http = new ClienteFalso();
+		ValidacaoCpfClient cliente = new ValidacaoCpfClient("http://localhost/users/", http, 10, 1, 50,
+				PoliticaFalha.FALHA_FECHADA, new ObjectMapper());
+
+		http.resposta = callback -> callback.failed(new ConnectException("Connection refused"));
+		falha(cliente.consultar(CPF));
+		assertTrue(cliente.isCircuitoAberto());
+		assertTrue(falha(cliente.consultar(CPF)).getMessage().startsWith("Circuito"));
+
+		Thread.sleep(80);
+		http.resposta = callback -> callback.failed(new TimeoutException("Connection lease request time out"));
+		assertTrue(falha(cliente.consultar(CPF)).getMessage().startsWith("Sem conexão livre"));
+
+		http.resposta = callback -> callback.completed(resposta(200, "{\"status\":\"ABLE_TO_VOTE\"}"));
+		assertEquals(SituacaoCpf.HABILITADO, cliente.consultar(CPF).get(5, TimeUnit.SECONDS));
+		assertFalse(cliente.isCircuitoAberto());
+		// a chamada recusada pelo circuito aberto não chega ao cliente HTTP
+		assertEquals(3, http.chamadas.get());
+	}
+
+	//Com o pool real de uma conexão ocupada, a segunda chamada esgota a espera pelo pool sem contar como falha do serviço
+	@Test
+	void esperaPeloPoolNaoAbreOCircuito() throws Exception {
+		CountDownLatch liberar = new CountDownLatch(1);
+		HttpServer servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		servidor.setExecutor(Executors.newCachedThreadPool());
+		servidor.createContext("/users/", troca -> {
+			try {
+				liberar.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] corpo = "{\"status\":\"ABLE_TO_VOTE\"}".getBytes(StandardCharsets.UTF_8);
+			troca.sendResponseHeaders(200, corpo.length);
+			troca.getResponseBody().write(corpo);
+			troca.close();
+		});
+		servidor.start();
+		ValidacaoCpfClient cliente = new ValidacaoCpfClient("http://127.0.0.1:" + servidor.getAddress().getPort() + "/users/",
+				500, 5000, 100, 1, 10, 1, 10000, PoliticaFalha.FALHA_FECHADA, new ObjectMapper());
+		try {
+			CompletableFuture<SituacaoCpf> ocupando = cliente.consultar(CPF);
+			Throwable erro = falha(cliente.consultar(CPF));
+			assertTrue(erro.getMessage().startsWith("Sem conexão livre"), erro.getMessage());
+			assertFalse(cliente.isCircuitoAberto());
+
+			liberar.countDown();
+			assertEquals(SituacaoCpf.HABILITADO, ocupando.get(5, TimeUnit.SECONDS));
+			assertEquals(SituacaoCpf.HABILITADO, cliente.consultar(CPF).get(5, TimeUnit.SECONDS));
+		} finally {
+			liberar.countDown();
+			cliente.fechar();
+			servidor.stop(0);
+		}
+	}
+
+	static Throwable falha(CompletableFuture<SituacaoCpf> consulta) {
+		ExecutionException erro = assertThrows(ExecutionException.class, () -> consulta.get(5, TimeUnit.SECONDS));
+		return erro.getCause();
+	}
+
+	private static HttpResponse resposta(int status, String json) {
+		BasicHttpResponse resposta = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+		resposta.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+		return resposta;
+	}
+
+	private interface Resposta {
+		void responder(FutureCallback<HttpResponse> callback);
+	}
+
+	//Cliente HTTP que responde na própria thread da chamada com a resposta configurada pelo teste
+	private static final class ClienteFalso extends CloseableHttpAsyncClient {
+		private final AtomicInteger chamadas = new AtomicInteger();
+		private volatile Resposta resposta;
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer, HttpAsyncResponseConsumer<T> responseConsumer,
+				HttpContext context, FutureCallback<T> callback) {
+			chamadas.incrementAndGet();
+			resposta.responder((FutureCallback<HttpResponse>) callback);
+			return null;
+		}
+
+		@Override
+		public boolean isRunning() {
+			return true;
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.controlevotacao.repository;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.PlatformTransactionManager;
+
+//Banco H2 em memória com o schema.sql da aplicação, para testar a gravação dos votos sem subir o contexto do Spring.
+//O repositório de votos é montado à mão: só as operações de PautaVotacaoRepositoryCustom funcionam nele.
+public final class BancoVotosTeste implements AutoCloseable {
+
+    private final EmbeddedDatabase banco;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private ParticoesVotos particoes;
+
+    public BancoVotosTeste() {
+        this.banco = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("classpath:schema.sql")
+                .build();
+        this.jdbcTemplate = new JdbcTemplate(banco);
+        this.transactionManager = new DataSourceTransactionManager(banco);
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    //Sobe as partições como na subida da aplicação, redistribuindo os votos se a quantidade mudou desde a anterior
+    public ParticoesVotos particoes(int quantidade) {
+        if (particoes != null) {
+            particoes.encerrar();
+        }
+        particoes = new ParticoesVotos(jdbcTemplate, transactionManager, quantidade, 10);
+        particoes.iniciar();
+        return particoes;
+    }
+
+    public PautaVotacaoRepository repositorio(int quantidadeParticoes) {
+        PautaVotacaoRepositoryImpl impl = new PautaVotacaoRepositoryImpl(jdbcTemplate, particoes(quantidadeParticoes));
+        return (PautaVotacaoRepository) Proxy.newProxyInstance(PautaVotacaoRepository.class.getClassLoader(),
+                new Class<?>[] {PautaVotacaoRepository.class}, (proxy, metodo, argumentos) -> {
+                    if (metodo.getDeclaringClass() != PautaVotacaoRepositoryCustom.class) {
+                        throw new UnsupportedOperationException(metodo.getName());
+                    }
+                    try {
+                        return metodo.invoke(impl, argumentos);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    public long contar(String tabela) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tabela, Long.class);
+    }
+
+    @Override
+    public void close() {
+        if (particoes != null) {
+            particoes.encerrar();
+        }
+        banco.shutdown();
+    }
+}
@@ -0,0 +1,113 @@
+package com.controlevotacao.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.util.CpfCodec;
+
+class ParticoesVotosTest {
+
+    private static final int VOTOS = 2_000;
+
+    private final BancoVotosTeste banco = new BancoVotosTeste();
+
+    @AfterEach
+    void fechar() {
+        banco.close();
+    }
+
+    //Uma tabela -> três partições -> cinco -> uma tabela de novo, sem perder nem repetir voto em nenhuma das mudanças
+    @Test
+    void redistribuiSemPerderNemRepetirVotos() {
+        List<PautaVotacao> votos = votos(new Random(23));
+        banco.repositorio(1).inserirLote(votos);
+
+        for (int quantidade : new int[] {3, 5, 1}) {
+            ParticoesVotos particoes = banco.particoes(quantidade);
+            assertEquals(quantidade, banco.getJdbcTemplate().queryForObject(
+                    "SELECT particoes FROM particionamento_votos WHERE id = 1", Integer.class));
+
+            Map<Long, Byte> lidos = new HashMap<>();
+            for (int i = 0; i < quantidade; i++) {
+                int particao = i;
+                banco.getJdbcTemplate().query("SELECT id_voto, voto FROM " + particoes.getTabelas().get(i), rs -> {
+                    long idVoto = rs.getLong(1);
+                    assertEquals(particao, particoes.indice(idVoto), "voto " + idVoto + " fora da sua partição");
+                    assertFalse(lidos.containsKey(idVoto), "voto " + idVoto + " repetido");
+                    lidos.put(idVoto, rs.getByte(2));
+                });
+            }
+            assertEquals(votos.size(), lidos.size());
+            for (PautaVotacao voto : votos) {
+                assertEquals(voto.getVoto().getCodigo(), lidos.get(voto.getIdVoto()));
+            }
+            assertTabelas(particoes);
+        }
+    }
+
+    //A expressão SQL da redistribuição põe cada voto na mesma partição que indice() usa para gravar e ler
+    @Test
+    void rotaSqlConcordaComIndice() {
+        List<PautaVotacao> votos = votos(new Random(5));
+        // extremos da faixa de uma pauta: cpfs com os menores e maiores números e pautas de número alto
+        votos.add(new PautaVotacao(1, 0L, TipoVoto.SIM));
+        votos.add(new PautaVotacao(1, PautaVotacao.FATOR_PAUTA - 1, TipoVoto.NAO));
+        votos.add(new PautaVotacao(90_000_000L, 99L, TipoVoto.SIM));
+        votos.add(new PautaVotacao(90_000_000L, 100L, TipoVoto.NAO));
+        banco.repositorio(1).inserirLote(votos);
+
+        for (int quantidade = 1; quantidade <= 7; quantidade++) {
+            ParticoesVotos particoes = new ParticoesVotos(banco.getJdbcTemplate(), banco.getTransactionManager(), quantidade, 10);
+            int[] divergentes = new int[1];
+            banco.getJdbcTemplate().query("SELECT id_voto, " + ParticoesVotos.rota(quantidade) + " FROM pauta_votacao", rs -> {
+                if (particoes.indice(rs.getLong(1)) != rs.getInt(2)) {
+                    divergentes[0]++;
+                }
+            });
+            assertEquals(0, divergentes[0], "partições: " + quantidade);
+            particoes.encerrar();
+        }
+    }
+
+    //Só existem as tabelas da distribuição atual, além de pauta_votacao, que fica vazia quando há partições
+    private void assertTabelas(ParticoesVotos particoes) {
+        Set<String> esperadas = new HashSet<>(particoes.getTabelas());
+        esperadas.add(ParticoesVotos.TABELA_UNICA);
+        Set<String> existentes = new HashSet<>(banco.getJdbcTemplate().queryForList(
+                "SELECT LOWER(table_name) FROM information_schema.tables WHERE LOWER(table_name) LIKE 'pauta_votacao%'",
+                String.class));
+        assertEquals(esperadas, existentes);
+        if (particoes.getQuantidade() > 1) {
+            assertEquals(0, banco.contar(ParticoesVotos.TABELA_UNICA));
+        }
+    }
+
+    // votos de três pautas com cpfs sorteados, sem repetir cpf na mesma pauta
+    private static List<PautaVotacao> votos(Random random) {
+        Set<Long> chaves = new HashSet<>();
+        List<PautaVotacao> votos = new ArrayList<>();
+        while (votos.size() < VOTOS) {
+            PautaVotacao voto = new PautaVotacao(1 + random.nextInt(3), CpfCodec.gerar(random),
+                    random.nextBoolean() ? TipoVoto.SIM : TipoVoto.NAO);
+            if (chaves.add(voto.getIdVoto())) {
+                votos.add(voto);
+            }
+        }
+        votos.sort(Comparator.comparingLong(PautaVotacao::getIdVoto));
+        return votos;
+    }
+}
@@ -0,0 +1,26 @@
+package com.controlevotacao.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PautaVotacaoRepositoryImplTest {
+
+    private final BancoVotosTeste banco = new BancoVotosTeste();
+
+    @AfterEach
+    void fechar() {
+        banco.close();
+    }
+
+    @Test
+    void aceitaLoteVazio() {
+        PautaVotacaoRepository repositorio = banco.repositorio(1);
+        assertEquals(0, repositorio.inserirLote(Collections.emptyList()).length);
+        repositorio.mesclarLote(Collections.emptyList());
+        assertEquals(0, banco.contar("pauta_votacao"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.controlevotacao.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import com.controlevotacao.model.StatusPauta;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AgendaFechamentoSessoesTest {
+
+	private final AgendaFechamentoSessoes agenda = new AgendaFechamentoSessoes(new SimpleMeterRegistry(), 20, 100, 2);
+
+	@AfterEach
+	void parar() throws InterruptedException {
+		agenda.parar();
+	}
+
+	@Test
+	void tentaDeNovoQuandoOFechamentoFalha() throws InterruptedException {
+		Map<String, StatusPauta> pautas = new ConcurrentHashMap<>();
+		pautas.put("p1", StatusPauta.ABERTA);
+		AtomicInteger tentativas = new AtomicInteger();
+		agenda.iniciar(idPauta -> {
+			if (tentativas.incrementAndGet() == 1) {
+				throw new QueryTimeoutException("tempo de espera pela trava esgotado");
+			}
+			pautas.put(idPauta, StatusPauta.FECHADA);
+			return true;
+		});
+
+		agenda.agendar("p1", System.currentTimeMillis());
+
+		assertTrue(aguardar(() -> pautas.get("p1") == StatusPauta.FECHADA, 5000));
+		assertEquals(2, tentativas.get());
+		// resolvida, a pauta sai da agenda
+		Thread.sleep(300);
+		assertEquals(2, tentativas.get());
+	}
+
+	@Test
+	void tentaDeNovoAteAPautaFicarResolvida() throws InterruptedException {
+		AtomicInteger tentativas = new AtomicInteger();
+		agenda.iniciar(idPauta -> tentativas.incrementAndGet() >= 4);
+
+		agenda.agendar("p1", System.currentTimeMillis());
+
+		// esperas de 20, 40 e 80 ms entre as tentativas
+		assertTrue(aguardar(() -> tentativas.get() >= 4, 5000));
+		Thread.sleep(300);
+		assertEquals(4, tentativas.get());
+	}
+
+	//A pauta cujo fechamento demora não atrasa o fechamento das que vencem depois dela
+	@Test
+	void fechamentoLentoNaoAtrasaOsOutros() throws InterruptedException {
+		CountDownLatch liberarLenta = new CountDownLatch(1);
+		Map<String, Long> fechadas = new ConcurrentHashMap<>();
+		agenda.iniciar(idPauta -> {
+			if (idPauta.equals("lenta")) {
+				try {
+					liberarLenta.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			fechadas.put(idPauta, System.currentTimeMillis());
+			return true;
+		});
+
+		long agora = System.currentTimeMillis();
+		agenda.agendar("lenta", agora);
+		agenda.agendar("rapida", agora + 50);
+
+		assertTrue(aguardar(() -> fechadas.containsKey("rapida"), 2000));
+		assertTrue(fechadas.get("rapida") - (agora + 50) < 1000);
+		assertFalse(fechadas.containsKey("lenta"));
+		liberarLenta.countDown();
+		assertTrue(aguardar(() -> fechadas.containsKey("lenta"), 2000));
+	}
+
+	private static boolean aguardar(Condicao condicao, long timeoutMillis) throws InterruptedException {
+		long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (!condicao.atendida()) {
+			if (System.nanoTime() - limite >= 0) {
+				return false;
+			}
+			Thread.sleep(5);
+		}
+		return true;
+	}
+
+	private interface Condicao {
+		boolean atendida();
+	}
+}
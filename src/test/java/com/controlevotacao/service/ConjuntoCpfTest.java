@@ -0,0 +1,116 @@
+package com.controlevotacao.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ConjuntoCpfTest {
+
+	// tabela inicial de cada segmento
+	private static final int CAPACIDADE = 64;
+
+	@Test
+	void adicionaUmaVezSo() {
+		ConjuntoCpf conjunto = new ConjuntoCpf();
+		assertTrue(conjunto.adicionar(11144477735L));
+		assertFalse(conjunto.adicionar(11144477735L));
+		assertTrue(conjunto.contem(11144477735L));
+		assertFalse(conjunto.contem(52998224725L));
+		assertEquals(1, conjunto.tamanho());
+	}
+
+	//Cadeia de sondagem que passa do fim da tabela para o início: a, b e d têm a última posição como ideal e c a primeira,
+	//então ficam em 63, 0, 1 e 2. Remover a desloca os outros para trás sem perder nenhum.
+	@Test
+	void removeEReinsereNaCadeiaQueDaAVolta() {
+		List<Long> noFim = cpfsNaPosicao(0, CAPACIDADE - 1, 3);
+		long c = cpfsNaPosicao(0, 0, 1).get(0);
+		long a = noFim.get(0);
+		long b = noFim.get(1);
+		long d = noFim.get(2);
+
+		ConjuntoCpf conjunto = new ConjuntoCpf();
+		assertTrue(conjunto.adicionar(a));
+		assertTrue(conjunto.adicionar(b));
+		assertTrue(conjunto.adicionar(c));
+		assertTrue(conjunto.adicionar(d));
+
+		conjunto.remover(a);
+		assertFalse(conjunto.contem(a));
+		assertTrue(conjunto.contem(b));
+		assertTrue(conjunto.contem(c));
+		assertTrue(conjunto.contem(d));
+		assertEquals(3, conjunto.tamanho());
+
+		conjunto.remover(c);
+		assertFalse(conjunto.contem(c));
+		assertTrue(conjunto.contem(b));
+		assertTrue(conjunto.contem(d));
+
+		assertTrue(conjunto.adicionar(a));
+		assertTrue(conjunto.adicionar(c));
+		assertFalse(conjunto.adicionar(b));
+		assertFalse(conjunto.adicionar(d));
+		assertEquals(4, conjunto.tamanho());
+
+		// remover o que não está no conjunto não altera nada
+		conjunto.remover(52998224725L);
+		assertEquals(4, conjunto.tamanho());
+	}
+
+	//Sequência aleatória de inclusões e remoções, com redimensionamentos, conferida com um HashSet
+	@Test
+	void acompanhaUmHashSet() {
+		Random random = new Random(42);
+		ConjuntoCpf conjunto = new ConjuntoCpf();
+		Set<Long> esperado = new HashSet<>();
+		List<Long> cpfs = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			cpfs.add(100_000_000L + random.nextInt(20_000));
+		}
+		for (int passo = 0; passo < 50_000; passo++) {
+			long cpf = cpfs.get(random.nextInt(cpfs.size()));
+			if (random.nextInt(3) == 0) {
+				conjunto.remover(cpf);
+				esperado.remove(cpf);
+			} else {
+				assertEquals(esperado.add(cpf), conjunto.adicionar(cpf));
+			}
+		}
+		assertEquals(esperado.size(), conjunto.tamanho());
+		for (long cpf : cpfs) {
+			assertEquals(esperado.contains(cpf), conjunto.contem(cpf));
+		}
+	}
+
+	//Procura cpfs que caem no segmento e na posição ideal informados, com a tabela inicial
+	private static List<Long> cpfsNaPosicao(int segmento, int posicao, int quantidade) {
+		List<Long> cpfs = new ArrayList<>();
+		for (long cpf = 1; cpfs.size() < quantidade; cpf++) {
+			int hash = espalhar(cpf);
+			if (hash >>> 28 == segmento && (hash & (CAPACIDADE - 1)) == posicao) {
+				cpfs.add(cpf);
+			}
+		}
+		return cpfs;
+	}
+
+	//Mesmo espalhamento de ConjuntoCpf
+	private static int espalhar(long cpf) {
+		long h = cpf;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
@@ -0,0 +1,125 @@
+package com.controlevotacao.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.util.CpfCodec;
+
+class DiarioVotosTest {
+
+	// segmentos de 4 registros
+	private static final int TAMANHO_SEGMENTO = 4 * DiarioVotos.TAMANHO_REGISTRO;
+
+	@TempDir
+	Path diretorio;
+
+	@Test
+	void passaParaOSegmentoSeguinteQuandoEnche() throws IOException {
+		DiarioVotos diario = new DiarioVotos(diretorio, 7, TAMANHO_SEGMENTO);
+		List<PautaVotacao> votos = votos(10);
+		for (int i = 0; i < votos.size(); i++) {
+			assertEquals(i, diario.anexar(votos.get(i)));
+		}
+		diario.forcar(0, diario.getEscritos());
+		assertEquals(10, diario.getEscritos());
+
+		List<Path> segmentos = DiarioVotos.listarSegmentos(diretorio);
+		assertEquals(3, segmentos.size());
+		assertEquals(7, DiarioVotos.indice(segmentos.get(0)));
+		assertEquals(9, DiarioVotos.indice(segmentos.get(2)));
+
+		List<PautaVotacao> relidos = new ArrayList<>();
+		for (Path segmento : segmentos) {
+			assertTrue(DiarioVotos.percorrer(segmento, relidos::add));
+		}
+		assertIguais(votos, relidos);
+
+		// a leitura para no fim do segmento do primeiro registro pedido
+		assertIguais(votos.subList(2, 4), diario.ler(2, 10, 100));
+		assertIguais(votos.subList(4, 6), diario.ler(4, 10, 2));
+		assertIguais(votos.subList(8, 10), diario.ler(8, 10, 100));
+
+		// o segmento em uso fica mesmo com todos os registros aplicados
+		diario.descartarAte(10);
+		segmentos = DiarioVotos.listarSegmentos(diretorio);
+		assertEquals(1, segmentos.size());
+		assertEquals(9, DiarioVotos.indice(segmentos.get(0)));
+
+		diario.descartarTodos();
+		assertTrue(DiarioVotos.listarSegmentos(diretorio).isEmpty());
+	}
+
+	@Test
+	void releAteORegistroCorrompido() throws IOException {
+		DiarioVotos diario = new DiarioVotos(diretorio, 0, TAMANHO_SEGMENTO);
+		List<PautaVotacao> votos = votos(3);
+		for (PautaVotacao voto : votos) {
+			diario.anexar(voto);
+		}
+		diario.forcar(0, diario.getEscritos());
+		Path segmento = DiarioVotos.listarSegmentos(diretorio).get(0);
+
+		// registro não terminado: tem o marcador, mas não o CRC
+		ByteBuffer incompleto = ByteBuffer.allocate(DiarioVotos.TAMANHO_REGISTRO);
+		incompleto.putLong(0, PautaVotacao.inicioFaixa(1) + 52998224725L);
+		incompleto.put(8, TipoVoto.SIM.getCodigo());
+		incompleto.put(9, (byte) 1);
+		try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.WRITE)) {
+			canal.write(incompleto, 3L * DiarioVotos.TAMANHO_REGISTRO);
+		}
+
+		List<PautaVotacao> relidos = new ArrayList<>();
+		assertFalse(DiarioVotos.percorrer(segmento, relidos::add));
+		assertIguais(votos, relidos);
+	}
+
+	@Test
+	void paraNoRegistroAlterado() throws IOException {
+		DiarioVotos diario = new DiarioVotos(diretorio, 0, TAMANHO_SEGMENTO);
+		for (PautaVotacao voto : votos(3)) {
+			diario.anexar(voto);
+		}
+		diario.forcar(0, diario.getEscritos());
+		Path segmento = DiarioVotos.listarSegmentos(diretorio).get(0);
+
+		// troca o código do voto do segundo registro sem refazer o CRC
+		try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.WRITE)) {
+			canal.write(ByteBuffer.wrap(new byte[] { TipoVoto.NAO.getCodigo() }), DiarioVotos.TAMANHO_REGISTRO + 8);
+		}
+
+		List<PautaVotacao> relidos = new ArrayList<>();
+		assertFalse(DiarioVotos.percorrer(segmento, relidos::add));
+		assertEquals(1, relidos.size());
+	}
+
+	private static List<PautaVotacao> votos(int quantidade) {
+		List<PautaVotacao> votos = new ArrayList<>();
+		for (int i = 0; i < quantidade; i++) {
+			long cpf = CpfCodec.comDigitosVerificadores(111444777L + i);
+			votos.add(new PautaVotacao(1, cpf, TipoVoto.SIM));
+		}
+		return votos;
+	}
+
+	private static void assertIguais(List<PautaVotacao> esperados, List<PautaVotacao> lidos) {
+		assertEquals(esperados.size(), lidos.size());
+		for (int i = 0; i < esperados.size(); i++) {
+			assertEquals(esperados.get(i).getIdVoto(), lidos.get(i).getIdVoto());
+			assertEquals(esperados.get(i).getVoto(), lidos.get(i).getVoto());
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.controlevotacao.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.QueryTimeoutException;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.repository.BancoVotosTeste;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+import com.controlevotacao.util.CpfCodec;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GravadorVotosDiarioTest {
+
+	// segmentos de 4 registros
+	private static final int TAMANHO_SEGMENTO = 4 * DiarioVotos.TAMANHO_REGISTRO;
+
+	@TempDir
+	Path diretorio;
+
+	private final BancoVotosTeste banco = new BancoVotosTeste();
+	private final PautaVotacaoRepository repositorio = banco.repositorio(1);
+	private final List<GravadorVotosDiario> gravadores = new ArrayList<>();
+
+	@AfterEach
+	void fechar() throws InterruptedException {
+		for (GravadorVotosDiario gravador : gravadores) {
+			gravador.parar();
+		}
+		banco.close();
+	}
+
+	//Queda com votos confirmados que não chegaram ao banco: a instância seguinte os reaplica a partir do diário,
+	//sem repetir os que já estavam no banco, e apaga os segmentos reaplicados
+	@Test
+	void reaplicaOsVotosDepoisDeUmaQueda() throws Exception {
+		AtomicBoolean bancoFora = new AtomicBoolean();
+		GravadorVotosDiario antes = gravador(comFalha(repositorio, bancoFora));
+		List<PautaVotacao> votos = votos(10);
+
+		// os cinco primeiros chegam ao banco: o segmento 0, aplicado por inteiro, é apagado e o 1 fica em uso
+		confirmar(antes, votos.subList(0, 5));
+		assertTrue(antes.aguardarAplicacao(5000));
+		assertTrue(aguardar(() -> segmentos().equals(indices(1)), 5000));
+
+		// com o banco fora, os outros só ficam no diário; o segmento 1 tem o voto 4 aplicado e os seguintes não
+		bancoFora.set(true);
+		confirmar(antes, votos.subList(5, 10));
+		assertEquals(5, banco.contar("pauta_votacao"));
+		assertEquals(indices(1, 2), segmentos());
+
+		// queda: sem parar() a primeira instância, a seguinte sobe sobre o mesmo diretório
+		GravadorVotosDiario depois = gravador(repositorio);
+		assertEquals(10, banco.contar("pauta_votacao"));
+		assertIguais(votos, repositorio.buscarPorPauta(1));
+		assertTrue(segmentos().isEmpty());
+
+		// o diário novo continua a numeração depois do último segmento reaplicado
+		PautaVotacao seguinte = votos(11).get(10);
+		confirmar(depois, Collections.singletonList(seguinte));
+		assertTrue(depois.aguardarAplicacao(5000));
+		assertEquals(11, banco.contar("pauta_votacao"));
+		assertEquals(indices(3), segmentos());
+	}
+
+	//O registro que a queda deixou pela metade no fim do último segmento é descartado; os anteriores são reaplicados
+	@Test
+	void descartaORegistroIncompletoDaQueda() throws Exception {
+		AtomicBoolean bancoFora = new AtomicBoolean(true);
+		GravadorVotosDiario antes = gravador(comFalha(repositorio, bancoFora));
+		List<PautaVotacao> votos = votos(3);
+		confirmar(antes, votos);
+
+		// registro não terminado: tem o marcador, mas não o CRC
+		ByteBuffer incompleto = ByteBuffer.allocate(DiarioVotos.TAMANHO_REGISTRO);
+		incompleto.putLong(0, PautaVotacao.inicioFaixa(1) + 52998224725L);
+		incompleto.put(8, TipoVoto.SIM.getCodigo());
+		incompleto.put(9, (byte) 1);
+		try (FileChannel canal = FileChannel.open(DiarioVotos.listarSegmentos(diretorio).get(0), StandardOpenOption.WRITE)) {
+			canal.write(incompleto, 3L * DiarioVotos.TAMANHO_REGISTRO);
+		}
+
+		gravador(repositorio);
+		assertIguais(votos, repositorio.buscarPorPauta(1));
+		assertTrue(segmentos().isEmpty());
+	}
+
+	private GravadorVotosDiario gravador(PautaVotacaoRepository repositorio) throws IOException {
+		GravadorVotosDiario gravador = new GravadorVotosDiario(repositorio, banco.getTransactionManager(),
+				new SimpleMeterRegistry(), diretorio, TAMANHO_SEGMENTO, 2, false);
+		gravador.iniciar();
+		gravadores.add(gravador);
+		return gravador;
+	}
+
+	//Grava os votos e espera a confirmação, que só vem depois de estarem em disco
+	private static void confirmar(GravadorVotosDiario gravador, List<PautaVotacao> votos) throws Exception {
+		List<CompletableFuture<String>> resultados = new ArrayList<>();
+		for (PautaVotacao voto : votos) {
+			resultados.add(gravador.gravar(voto));
+		}
+		for (CompletableFuture<String> resultado : resultados) {
+			assertEquals("REGISTRADO", resultado.get(5, TimeUnit.SECONDS));
+		}
+	}
+
+	//Repositório que falha ao gravar enquanto a chave estiver ligada, como um banco fora do ar
+	private static PautaVotacaoRepository comFalha(PautaVotacaoRepository repositorio, AtomicBoolean falhar) {
+		return (PautaVotacaoRepository) Proxy.newProxyInstance(PautaVotacaoRepository.class.getClassLoader(),
+				new Class<?>[] {PautaVotacaoRepository.class}, (proxy, metodo, argumentos) -> {
+					if (falhar.get() && metodo.getName().equals("mesclarLote")) {
+						throw new QueryTimeoutException("banco fora do ar");
+					}
+					try {
+						return metodo.invoke(repositorio, argumentos);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+
+	private List<Long> segmentos() throws IOException {
+		List<Long> indices = new ArrayList<>();
+		for (Path segmento : DiarioVotos.listarSegmentos(diretorio)) {
+			indices.add(DiarioVotos.indice(segmento));
+		}
+		return indices;
+	}
+
+	private static List<Long> indices(long... indices) {
+		List<Long> lista = new ArrayList<>();
+		for (long indice : indices) {
+			lista.add(indice);
+		}
+		return lista;
+	}
+
+	// cpfs crescentes, na mesma ordem em que o repositório devolve os votos da pauta
+	private static List<PautaVotacao> votos(int quantidade) {
+		List<PautaVotacao> votos = new ArrayList<>();
+		for (int i = 0; i < quantidade; i++) {
+			long cpf = CpfCodec.comDigitosVerificadores(111444777L + i);
+			votos.add(new PautaVotacao(1, cpf, i % 2 == 0 ? TipoVoto.SIM : TipoVoto.NAO));
+		}
+		return votos;
+	}
+
+	private static void assertIguais(List<PautaVotacao> esperados, List<PautaVotacao> lidos) {
+		assertEquals(esperados.size(), lidos.size());
+		for (int i = 0; i < esperados.size(); i++) {
+			assertEquals(esperados.get(i).getIdVoto(), lidos.get(i).getIdVoto());
+			assertEquals(esperados.get(i).getVoto(), lidos.get(i).getVoto());
+		}
+	}
+
+	private static boolean aguardar(Condicao condicao, long timeoutMillis) throws Exception {
+		long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (!condicao.atendida()) {
+			if (System.nanoTime() - limite >= 0) {
+				return false;
+			}
+			Thread.sleep(5);
+		}
+		return true;
+	}
+
+	private interface Condicao {
+		boolean atendida() throws Exception;
+	}
+}
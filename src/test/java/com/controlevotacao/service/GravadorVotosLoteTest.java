@@ -0,0 +1,110 @@
+package com.controlevotacao.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.controlevotacao.model.PautaVotacao;
+import com.controlevotacao.model.TipoVoto;
+import com.controlevotacao.repository.BancoVotosTeste;
+import com.controlevotacao.repository.PautaVotacaoRepository;
+import com.controlevotacao.util.CpfCodec;
+
+class GravadorVotosLoteTest {
+
+	private final BancoVotosTeste banco = new BancoVotosTeste();
+	private final PautaVotacaoRepository repositorio = banco.repositorio(1);
+	private GravadorVotosLote gravador;
+
+	@AfterEach
+	void fechar() throws InterruptedException {
+		if (gravador != null) {
+			gravador.parar();
+		}
+		banco.close();
+	}
+
+	//Lote com um cpf que já votou e outro repetido dentro do próprio lote: o batch é desfeito e regravado voto a voto
+	@Test
+	void regravaVotoAVotoQuandoOLoteTemDuplicado() throws Exception {
+		repositorio.inserir(voto(4));
+		gravador = gravador(100, 1000);
+
+		// enfileirados antes de a thread gravadora começar, os cinco votos vão no mesmo lote
+		List<CompletableFuture<String>> resultados = new ArrayList<>();
+		resultados.add(gravador.gravar(voto(1)));
+		resultados.add(gravador.gravar(voto(2)));
+		resultados.add(gravador.gravar(voto(1)));
+		resultados.add(gravador.gravar(voto(3)));
+		resultados.add(gravador.gravar(voto(4)));
+		gravador.iniciar();
+
+		assertEquals("REGISTRADO", resultado(resultados.get(0)));
+		assertEquals("REGISTRADO", resultado(resultados.get(1)));
+		assertEquals("CPF_DUPLICADO", resultado(resultados.get(2)));
+		assertEquals("REGISTRADO", resultado(resultados.get(3)));
+		assertEquals("CPF_DUPLICADO", resultado(resultados.get(4)));
+		assertEquals(4, banco.contar("pauta_votacao"));
+	}
+
+	//Com a fila cheia o voto espera o timeout de enfileiramento e é recusado; os que entraram são gravados depois
+	@Test
+	void recusaQuandoAFilaEstaCheia() throws Exception {
+		gravador = gravador(2, 50);
+		CompletableFuture<String> primeiro = gravador.gravar(voto(1));
+		CompletableFuture<String> segundo = gravador.gravar(voto(2));
+
+		long inicio = System.nanoTime();
+		CompletableFuture<String> recusado = gravador.gravar(voto(3));
+		assertTrue(System.nanoTime() - inicio >= TimeUnit.MILLISECONDS.toNanos(50));
+		ExecutionException erro = assertThrows(ExecutionException.class, () -> recusado.get(0, TimeUnit.SECONDS));
+		assertInstanceOf(IllegalStateException.class, erro.getCause());
+
+		gravador.iniciar();
+		assertEquals("REGISTRADO", resultado(primeiro));
+		assertEquals("REGISTRADO", resultado(segundo));
+		assertEquals(2, banco.contar("pauta_votacao"));
+	}
+
+	//Ao parar, a thread gravadora ainda grava o que estava na fila; os votos que chegam depois são recusados
+	@Test
+	void gravaAFilaAoParar() throws Exception {
+		gravador = gravador(100, 1000);
+		List<CompletableFuture<String>> resultados = new ArrayList<>();
+		for (int i = 1; i <= 5; i++) {
+			resultados.add(gravador.gravar(voto(i)));
+		}
+		gravador.iniciar();
+		gravador.parar();
+
+		for (CompletableFuture<String> resultado : resultados) {
+			assertEquals("REGISTRADO", resultado.getNow(null));
+		}
+		assertEquals(5, banco.contar("pauta_votacao"));
+		assertTrue(gravador.gravar(voto(6)).isCompletedExceptionally());
+	}
+
+	// lotes de até 500 votos e espera de 200 ms, para que os votos enfileirados juntos saiam no mesmo lote
+	private GravadorVotosLote gravador(int capacidadeFila, long timeoutEnfileiramentoMs) {
+		return new GravadorVotosLote(repositorio, banco.getTransactionManager(), capacidadeFila, 500, 200,
+				timeoutEnfileiramentoMs);
+	}
+
+	private static PautaVotacao voto(int i) {
+		return new PautaVotacao(1, CpfCodec.comDigitosVerificadores(111444777L + i), TipoVoto.SIM);
+	}
+
+	private static String resultado(CompletableFuture<String> resultado) throws Exception {
+		return resultado.get(5, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,151 @@
+package com.controlevotacao.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.controlevotacao.client.ValidacaoCpfClient;
+import com.controlevotacao.client.ValidacaoCpfClient.PoliticaFalha;
+import com.controlevotacao.exception.ValidacaoCpfIndisponivelException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ValidacaoCpfServiceTest {
+
+	private static final long CPF = 11144477735L;
+
+	private final AtomicInteger chamadas = new AtomicInteger();
+	private final List<LogRecord> avisosDoCache = new ArrayList<>();
+	private final Logger logCache = Logger.getLogger("com.github.benmanes.caffeine.cache.LocalAsyncCache");
+	private final Handler capturaLog = new Handler() {
+		@Override
+		public void publish(LogRecord registro) {
+			synchronized (avisosDoCache) {
+				avisosDoCache.add(registro);
+			}
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+	private volatile int status = 500;
+	private volatile CountDownLatch liberarResposta = new CountDownLatch(0);
+	private HttpServer servidor;
+	private ValidacaoCpfClient cliente;
+	private ValidacaoCpfService service;
+
+	@BeforeEach
+	void iniciar() throws Exception {
+		servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		servidor.setExecutor(Executors.newCachedThreadPool());
+		servidor.createContext("/users/", troca -> {
+			chamadas.incrementAndGet();
+			try {
+				liberarResposta.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] corpo = "{\"status\":\"ABLE_TO_VOTE\"}".getBytes(StandardCharsets.UTF_8);
+			troca.sendResponseHeaders(status, corpo.length);
+			troca.getResponseBody().write(corpo);
+			troca.close();
+		});
+		servidor.start();
+		cliente = new ValidacaoCpfClient("http://127.0.0.1:" + servidor.getAddress().getPort() + "/users/",
+				500, 5000, 1000, 10, 10, 100, 10000, PoliticaFalha.FALHA_FECHADA, new ObjectMapper());
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		service = new ValidacaoCpfService(cliente, new MetricasVotacao(registry, new RegistroSessao()), registry,
+				1000, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofHours(1));
+		logCache.addHandler(capturaLog);
+	}
+
+	@AfterEach
+	void parar() throws Exception {
+		logCache.removeHandler(capturaLog);
+		liberarResposta.countDown();
+		cliente.fechar();
+		servidor.stop(0);
+	}
+
+	//A falha chega a quem pediu, conta como falha de carga, não fica no cache e não gera aviso do Caffeine
+	@Test
+	void falhaNaoFicaNoCacheNemGeraAvisoDoCache() throws Exception {
+		for (int i = 1; i <= 2; i++) {
+			Throwable erro = falha(service.validarAsync(CPF));
+			assertInstanceOf(ValidacaoCpfIndisponivelException.class, erro);
+			assertTrue(erro.getMessage().contains("Status HTTP 500"), erro.getMessage());
+			assertEquals(i, chamadas.get());
+			// o Caffeine tira a carga que falhou do cache logo depois de concluída, na thread que a concluiu
+			long falhas = i;
+			assertTrue(aguardar(() -> service.obterEstatisticas().get("consultasComFalha").equals(falhas), 5000));
+		}
+		assertTrue(avisosDoCache.isEmpty(), () -> avisosDoCache.get(0).getMessage());
+
+		status = 200;
+		assertEquals(SituacaoCpf.HABILITADO, service.validarAsync(CPF).get(5, TimeUnit.SECONDS));
+		assertEquals(SituacaoCpf.HABILITADO, service.validarAsync(CPF).get(5, TimeUnit.SECONDS));
+		assertEquals(3, chamadas.get());
+	}
+
+	//Quem chega enquanto a consulta do mesmo cpf está em andamento espera por ela e recebe o mesmo erro
+	@Test
+	void consultasSimultaneasRecebemOMesmoErro() throws Exception {
+		liberarResposta = new CountDownLatch(1);
+		CompletableFuture<SituacaoCpf> primeira = service.validarAsync(CPF);
+		CompletableFuture<SituacaoCpf> segunda = service.validarAsync(CPF);
+		liberarResposta.countDown();
+
+		Throwable erro = falha(primeira);
+		assertSame(erro, falha(segunda));
+		assertEquals(1, chamadas.get());
+		assertTrue(avisosDoCache.isEmpty(), () -> avisosDoCache.get(0).getMessage());
+	}
+
+	private static boolean aguardar(Condicao condicao, long timeoutMillis) throws InterruptedException {
+		long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (!condicao.atendida()) {
+			if (System.nanoTime() - limite >= 0) {
+				return false;
+			}
+			Thread.sleep(5);
+		}
+		return true;
+	}
+
+	private interface Condicao {
+		boolean atendida();
+	}
+
+	private static Throwable falha(CompletableFuture<SituacaoCpf> consulta) {
+		ExecutionException erro = assertThrows(ExecutionException.class, () -> consulta.get(5, TimeUnit.SECONDS));
+		return erro.getCause();
+	}
+}
@@ -0,0 +1,66 @@
+package com.controlevotacao.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CpfCodecTest {
+
+	private static final String[] VALIDOS = { "11144477735", "52998224725" };
+
+	private static final String[] INVALIDOS = {
+			// dígitos verificadores errados
+			"12345678900", "11144477734", "52998224752",
+			// todos os dígitos iguais passam no módulo 11
+			"11111111111", "00000000000",
+			// tamanho ou caracteres fora do formato
+			"1114447773", "111444777350", "111.444.777-35", "1114447773a", "" };
+
+	@Test
+	void aceitaDigitosVerificadoresCorretos() {
+		for (String cpf : VALIDOS) {
+			long numero = Long.parseLong(cpf);
+			assertEquals(numero, CpfCodec.paraLong(cpf), cpf);
+			assertEquals(numero, CpfCodec.paraLong(("x" + cpf + "x").toCharArray(), 1, CpfCodec.TAMANHO), cpf);
+			assertTrue(CpfCodec.valido(numero), cpf);
+			assertEquals(numero, CpfCodec.comDigitosVerificadores(numero / 100), cpf);
+		}
+	}
+
+	@Test
+	void recusaCpfsInvalidos() {
+		for (String cpf : INVALIDOS) {
+			assertEquals(CpfCodec.INVALIDO, CpfCodec.paraLong(cpf), cpf);
+			assertEquals(CpfCodec.INVALIDO, CpfCodec.paraLong(cpf.toCharArray(), 0, cpf.length()), cpf);
+		}
+		assertEquals(CpfCodec.INVALIDO, CpfCodec.paraLong((String) null));
+		assertFalse(CpfCodec.valido(12345678900L));
+		assertFalse(CpfCodec.valido(11111111111L));
+		assertFalse(CpfCodec.valido(0L));
+		assertFalse(CpfCodec.valido(-1L));
+		assertFalse(CpfCodec.valido(100_000_000_000L));
+	}
+
+	@Test
+	void mantemOsZerosAEsquerda() {
+		long cpf = CpfCodec.comDigitosVerificadores(1234567L);
+		String texto = CpfCodec.paraString(cpf);
+		assertEquals(CpfCodec.TAMANHO, texto.length());
+		assertTrue(texto.startsWith("00"));
+		assertEquals(cpf, CpfCodec.paraLong(texto));
+	}
+
+	@Test
+	void geraCpfsValidos() {
+		Random random = new Random(7);
+		for (int i = 0; i < 1_000; i++) {
+			long cpf = CpfCodec.gerar(random);
+			assertTrue(CpfCodec.valido(cpf));
+			assertEquals(cpf, CpfCodec.paraLong(CpfCodec.paraString(cpf)));
+		}
+	}
+}